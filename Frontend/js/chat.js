@@ -5,6 +5,10 @@ const currentUserId = sessionStorage.getItem('userId');
 const receiverId = sessionStorage.getItem('receiverId');
 const receiverName = sessionStorage.getItem('receiverName');
 let websocket;
+const PAGE_SIZE = 50;
+let oldestMessageId = null; // Cursor for loading older messages
+let hasOlderMessages = true;
+let loadingOlderMessages = false;
 const WEBSOCKET_URL = `ws://localhost:8080/WebRTC_BackEnd/ws/chat/${currentUserId}`;
 
 // --- DOM Elements ---
@@ -72,7 +76,20 @@ function connectWebSocket() {
 
     websocket.onmessage = (event) => {
         const message = JSON.parse(event.data);
-        displayMessage(message);
+        // Chat messages have no type; anything else is a control frame
+        switch (message.type) {
+            case undefined:
+                displayMessage(message);
+                break;
+            case 'chat-error':
+                displayChatError(message);
+                break;
+            case 'presence':
+                // This page shows a single conversation, so presence changes are not shown
+                break;
+            default:
+                console.warn('Ignoring unknown chat frame:', message.type);
+        }
     };
 
     websocket.onclose = () => {
@@ -86,15 +103,17 @@ function connectWebSocket() {
 }
 
 /**
- * Fetches the chat history between the two users.
+ * Fetches the latest page of the chat history between the two users.
  */
 async function fetchChatHistory() {
     try {
-        const response = await fetch(`${API_BASE_URL}/chat/messages?userId1=${currentUserId}&userId2=${receiverId}`);
+        const response = await fetch(`${API_BASE_URL}/chat/messages?userId1=${currentUserId}&userId2=${receiverId}&limit=${PAGE_SIZE}`);
         if (!response.ok) throw new Error('Failed to fetch chat history.');
 
         const messages = await response.json();
         chatMessagesContainer.innerHTML = ''; // Clear container
+        oldestMessageId = messages.length > 0 ? messages[0].id : null;
+        hasOlderMessages = messages.length === PAGE_SIZE;
         messages.forEach(displayMessage);
     } catch (error) {
         console.error(error);
@@ -102,10 +121,63 @@ async function fetchChatHistory() {
 }
 
 /**
- * Displays a single message in the chat window.
+ * Loads the page of messages before the oldest one shown, when scrolled to the top.
+ */
+async function fetchOlderMessages() {
+    if (loadingOlderMessages || !hasOlderMessages || oldestMessageId === null) return;
+    loadingOlderMessages = true;
+    try {
+        const response = await fetch(`${API_BASE_URL}/chat/messages?userId1=${currentUserId}&userId2=${receiverId}&limit=${PAGE_SIZE}&before=${oldestMessageId}`);
+        if (!response.ok) throw new Error('Failed to fetch older messages.');
+
+        const messages = await response.json();
+        hasOlderMessages = messages.length === PAGE_SIZE;
+        if (messages.length > 0) {
+            oldestMessageId = messages[0].id;
+            // Keep the view on the same message while content is added above it
+            const previousHeight = chatMessagesContainer.scrollHeight;
+            const firstChild = chatMessagesContainer.firstChild;
+            messages.forEach(msg => chatMessagesContainer.insertBefore(createMessageElement(msg), firstChild));
+            chatMessagesContainer.scrollTop = chatMessagesContainer.scrollHeight - previousHeight;
+        }
+    } catch (error) {
+        console.error(error);
+    } finally {
+        loadingOlderMessages = false;
+    }
+}
+
+/**
+ * Displays a single message at the bottom of the chat window.
  * @param {object} msg - The message object.
  */
 function displayMessage(msg) {
+    chatMessagesContainer.appendChild(createMessageElement(msg));
+    // Scroll to the latest message
+    chatMessagesContainer.scrollTop = chatMessagesContainer.scrollHeight;
+}
+
+/**
+ * Shows that a message sent in this conversation was not delivered or saved.
+ * @param {object} frame - The chat-error frame: id, receiverId and error.
+ */
+function displayChatError(frame) {
+    if (frame.receiverId.toString() !== receiverId) return;
+    const errorDiv = document.createElement('div');
+    errorDiv.className = 'message error';
+    const content = document.createElement('div');
+    content.className = 'message-content';
+    content.textContent = `Message not sent: ${frame.error}`;
+    errorDiv.appendChild(content);
+    chatMessagesContainer.appendChild(errorDiv);
+    chatMessagesContainer.scrollTop = chatMessagesContainer.scrollHeight;
+}
+
+/**
+ * Builds the element for a single message.
+ * @param {object} msg - The message object.
+ */
+function createMessageElement(msg) {
     const messageDiv = document.createElement('div');
     const isSent = msg.senderId.toString() === currentUserId;
     messageDiv.className = `message ${isSent ? 'sent' : 'received'}`;
@@ -122,9 +194,7 @@ function displayMessage(msg) {
             <span class="message-time">${time}</span>
         </div>
     `;
-    chatMessagesContainer.appendChild(messageDiv);
-    // Scroll to the latest message
-    chatMessagesContainer.scrollTop = chatMessagesContainer.scrollHeight;
+    return messageDiv;
 }
 
 /**
@@ -207,6 +277,10 @@ function initialize() {
             sendButton.onclick = sendMessage;
         }
 
+        chatMessagesContainer.addEventListener('scroll', () => {
+            if (chatMessagesContainer.scrollTop === 0) fetchOlderMessages();
+        });
+
         messageInput.addEventListener('keypress', (e) => {
             if (e.key === 'Enter') sendMessage();
         });
@@ -0,0 +1,62 @@
+package com.webrtc.backend.benchmarks;
+
+/**
+ * Realistic payloads shared by the benchmarks.
+ */
+public final class Frames {
+
+    private static final String SDP_LINES =
+            "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n"
+            + "a=group:BUNDLE 0 1\\r\\na=msid-semantic: WMS stream\\r\\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\\r\\n"
+            + "c=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:F7gI\\r\\n"
+            + "a=ice-pwd:x9cml/YzichV2+XlhiMu8g\\r\\na=ice-options:trickle\\r\\n"
+            + "a=fingerprint:sha-256 D2:FA:0E:C3:22:59:5E:14:95:69:92:3D:13:B4:84:24:2C:C2:A2:C0\\r\\n"
+            + "a=setup:actpass\\r\\na=mid:0\\r\\na=sendrecv\\r\\na=rtcp-mux\\r\\n"
+            + "a=rtpmap:111 opus/48000/2\\r\\na=fmtp:111 minptime=10;useinbandfec=1\\r\\n";
+
+    private Frames() {
+    }
+
+    /**
+     * @return an SDP body of roughly {@code size} characters, JSON-escaped
+     */
+    public static String sdp(int size) {
+        StringBuilder sdp = new StringBuilder(size + SDP_LINES.length());
+        while (sdp.length() < size) {
+            sdp.append(SDP_LINES);
+        }
+        return sdp.toString();
+    }
+
+    /**
+     * @return an SDP body of roughly {@code size} characters as stored in the database, unescaped
+     */
+    public static String rawSdp(int size) {
+        return sdp(size).replace("\\r\\n", "\r\n");
+    }
+
+    /**
+     * @return a send-sdp request body as the frontend posts it
+     */
+    public static String sdpRequest(int senderId, int receiverId, int sdpSize) {
+        return "{\"senderId\":" + senderId + ",\"receiverId\":" + receiverId
+                + ",\"sdp\":\"" + sdp(sdpSize) + "\",\"type\":\"offer\"}";
+    }
+
+    /**
+     * @return the browser's RTCIceCandidate as JSON, which the frontend sends as a string
+     */
+    public static String iceCandidate() {
+        return "{\"candidate\":\"candidate:842163049 1 udp 1677729535 203.0.113.7 54321 typ srflx raddr 192.168.1.20"
+                + " rport 54321 generation 0 ufrag F7gI network-cost 999\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0}";
+    }
+
+    /**
+     * @return a signaling WebSocket frame as the frontend sends it, with the SDP before the receiver id
+     */
+    public static String signalingFrame(int receiverId, int sdpSize) {
+        return "{\"type\":\"offer\",\"payload\":{\"senderId\":7,\"sdp\":{\"type\":\"offer\",\"sdp\":\""
+                + sdp(sdpSize) + "\"},\"receiverId\":" + receiverId + "}}";
+    }
+}
@@ -0,0 +1,92 @@
+package com.webrtc.backend.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webrtc.backend.model.ChatFrame;
+import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.model.UserIdRequest;
+import com.webrtc.backend.util.JsonCodec;
+
+/**
+ * Per-request JSON work before and after {@link JsonCodec}.
+ *
+ * The {@code mapper*} benchmarks do what the endpoints used to: a plain {@link ObjectMapper}
+ * per class, request bodies read into maps through a {@link TypeReference}, chat frames read
+ * as a tree and then converted. The {@code codec*} benchmarks use the shared, type-bound
+ * readers and writers. Run with {@code -prof gc} to compare the allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private static final String HEARTBEAT = "{\"userId\":42}";
+    private static final String CHAT_FRAME = "{\"receiverId\":42,\"content\":\"Are you free for a call in ten minutes?\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatMessage message;
+
+    @Setup
+    public void setUp() {
+        message = new ChatMessage();
+        message.setId(1001);
+        message.setSenderId(7);
+        message.setReceiverId(42);
+        message.setContent("Are you free for a call in ten minutes?");
+        message.setCreatedAt(new Timestamp(1700000000000L));
+    }
+
+    @Benchmark
+    public Integer mapperHeartbeat() throws IOException {
+        Map<String, Integer> payload = objectMapper.readValue(new StringReader(HEARTBEAT), new TypeReference<Map<String, Integer>>(){});
+        return payload.get("userId");
+    }
+
+    @Benchmark
+    public Integer codecHeartbeat() throws IOException {
+        UserIdRequest payload = JsonCodec.USER_ID_REQUEST_READER.readValue(new StringReader(HEARTBEAT));
+        return payload.getUserId();
+    }
+
+    @Benchmark
+    public ChatMessage mapperChatFrame() throws IOException {
+        JsonNode json = objectMapper.readTree(CHAT_FRAME);
+        return objectMapper.treeToValue(json, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatFrame codecChatFrame() throws IOException {
+        return JsonCodec.CHAT_FRAME_READER.readValue(CHAT_FRAME);
+    }
+
+    @Benchmark
+    public String mapperChatMessage() throws IOException {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String codecChatMessage() throws IOException {
+        return JsonCodec.CHAT_MESSAGE_WRITER.writeValueAsString(message);
+    }
+}
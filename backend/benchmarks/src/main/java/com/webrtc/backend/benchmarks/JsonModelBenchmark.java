@@ -0,0 +1,109 @@
+package com.webrtc.backend.benchmarks;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webrtc.backend.model.CallStatus;
+import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.model.SdpType;
+import com.webrtc.backend.util.JsonCodec;
+
+/**
+ * Encoding and decoding the models the endpoints exchange, through {@link JsonCodec} as the
+ * servlets and WebSocket endpoints do. Decoding reads bodies shaped like the frontend's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonModelBenchmark {
+
+    /** Size of the SDP body; offers from browsers are usually a few KB. */
+    @Param({"4096"})
+    public int sdpSize;
+
+    private ChatMessage chatMessage;
+    private String chatMessageJson;
+    private SdpExchange sdp;
+    private String sdpJson;
+    private List<IceCandidate> candidates;
+    private String candidateJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        chatMessage = new ChatMessage();
+        chatMessage.setId(1001);
+        chatMessage.setSenderId(7);
+        chatMessage.setReceiverId(42);
+        chatMessage.setContent("Are you free for a call in ten minutes?");
+        chatMessage.setCreatedAt(new Timestamp(1700000000000L));
+        chatMessageJson = JsonCodec.CHAT_MESSAGE_WRITER.writeValueAsString(chatMessage);
+
+        sdp = new SdpExchange();
+        sdp.setId(55);
+        sdp.setSenderId(7);
+        sdp.setReceiverId(42);
+        sdp.setType(SdpType.OFFER);
+        sdp.setSdp(Frames.rawSdp(sdpSize));
+        sdp.setStatus(CallStatus.PENDING);
+        sdp.setCreatedAt(new Timestamp(1700000000000L));
+        sdpJson = Frames.sdpRequest(7, 42, sdpSize);
+
+        IceCandidate candidate = new IceCandidate();
+        candidate.setSenderId(7);
+        candidate.setReceiverId(42);
+        candidate.setCandidate(Frames.iceCandidate());
+        candidates = Collections.singletonList(candidate);
+        // The candidate body is the model itself, with the browser's candidate as a string field
+        candidateJson = JsonCodec.WRITER.writeValueAsString(candidate);
+    }
+
+    @Benchmark
+    public String encodeChatMessage() throws IOException {
+        return JsonCodec.CHAT_MESSAGE_WRITER.writeValueAsString(chatMessage);
+    }
+
+    @Benchmark
+    public ChatMessage decodeChatMessage() throws IOException {
+        return JsonCodec.CHAT_MESSAGE_READER.readValue(chatMessageJson);
+    }
+
+    @Benchmark
+    public String encodeSdp() throws IOException {
+        return JsonCodec.SDP_WRITER.writeValueAsString(sdp);
+    }
+
+    @Benchmark
+    public SdpExchange decodeSdp() throws IOException {
+        return JsonCodec.SDP_READER.readValue(sdpJson);
+    }
+
+    @Benchmark
+    public String encodeIceCandidates() throws IOException {
+        return JsonCodec.ICE_CANDIDATE_LIST_WRITER.writeValueAsString(candidates);
+    }
+
+    @Benchmark
+    public IceCandidate decodeIceCandidate() throws IOException {
+        return JsonCodec.ICE_CANDIDATE_READER.readValue(candidateJson);
+    }
+}
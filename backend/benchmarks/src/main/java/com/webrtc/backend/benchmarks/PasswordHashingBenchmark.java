@@ -0,0 +1,40 @@
+package com.webrtc.backend.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webrtc.backend.util.PasswordUtil;
+
+/**
+ * {@link PasswordUtil} as used by login ({@code checkPassword}) and registration ({@code hashPassword}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private final String password = "correct horse battery staple";
+    private final String hash = PasswordUtil.hashPassword(password);
+
+    @Benchmark
+    public String hashPassword() {
+        return PasswordUtil.hashPassword(password);
+    }
+
+    @Benchmark
+    public boolean checkPassword() {
+        return PasswordUtil.checkPassword(password, hash);
+    }
+}
@@ -0,0 +1,57 @@
+package com.webrtc.backend.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webrtc.backend.websocket.SignalingRouter;
+
+/**
+ * Routing cost of one relayed signaling frame: finding {@code payload.receiverId}.
+ *
+ * {@code jsonObject} is how SignalingWebSocket used to do it (a full org.json tree per frame),
+ * {@code streaming} is {@link SignalingRouter}. Run with {@code -prof gc} to compare the
+ * allocation per frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignalingRelayBenchmark {
+
+    /** Size of the SDP body in the frame; offers from browsers are usually a few KB. */
+    @Param({"256", "4096"})
+    public int sdpSize;
+
+    private String frame;
+
+    @Setup
+    public void setUp() {
+        frame = Frames.signalingFrame(42, sdpSize);
+    }
+
+    @Benchmark
+    public int jsonObject() {
+        JSONObject payload = new JSONObject(frame).optJSONObject("payload");
+        return Integer.parseInt(payload.get("receiverId").toString());
+    }
+
+    @Benchmark
+    public int streaming() throws IOException {
+        return SignalingRouter.receiverId(frame);
+    }
+}
@@ -0,0 +1,118 @@
+package com.webrtc.backend.dao;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webrtc.backend.benchmarks.Frames;
+import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+
+/**
+ * Turning one result set row into a model with the DAO row mappers.
+ *
+ * The rows come from an in-memory {@link ResultSet} that looks columns up by label in a map,
+ * as the driver does, so no database is needed. Its reflective dispatch is part of every
+ * number here; compare runs against each other rather than against a live driver.
+ * Lives in the DAO package because the mappers are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"4096"})
+    public int sdpSize;
+
+    private ResultSet chatRow;
+    private ResultSet sdpRow;
+    private ResultSet candidateRow;
+
+    @Setup
+    public void setUp() {
+        Timestamp createdAt = new Timestamp(1700000000000L);
+
+        Map<String, Object> chat = new HashMap<>();
+        chat.put("id", 1001);
+        chat.put("sender_id", 7);
+        chat.put("receiver_id", 42);
+        chat.put("content", "Are you free for a call in ten minutes?");
+        chat.put("read", Boolean.FALSE);
+        chat.put("created_at", createdAt);
+        chatRow = row(chat);
+
+        Map<String, Object> sdp = new HashMap<>();
+        sdp.put("id", 55);
+        sdp.put("sender_id", 7);
+        sdp.put("receiver_id", 42);
+        sdp.put("type", "offer");
+        sdp.put("sdp", Frames.rawSdp(sdpSize));
+        sdp.put("status", "pending");
+        sdp.put("created_at", createdAt);
+        sdpRow = row(sdp);
+
+        Map<String, Object> candidate = new HashMap<>();
+        candidate.put("id", 99);
+        candidate.put("sender_id", 7);
+        candidate.put("receiver_id", 42);
+        candidate.put("candidate", Frames.iceCandidate());
+        candidate.put("created_at", createdAt);
+        candidateRow = row(candidate);
+    }
+
+    /**
+     * @return a result set positioned on a single row with the given column values
+     */
+    private static ResultSet row(Map<String, Object> columns) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = columns.get((String) args[0]);
+                    switch (method.getName()) {
+                        case "getInt":
+                            return value != null ? value : 0;
+                        case "getBoolean":
+                            return value != null ? value : Boolean.FALSE;
+                        case "getString":
+                        case "getTimestamp":
+                            return value;
+                        default:
+                            throw new SQLException("Not supported by the benchmark row: " + method.getName());
+                    }
+                });
+    }
+
+    @Benchmark
+    public ChatMessage mapChatMessage() throws SQLException {
+        return ChatDao.mapResultSetToMessage(chatRow);
+    }
+
+    @Benchmark
+    public SdpExchange mapSdp() throws SQLException {
+        return SignalingDao.mapResultSetToSdp(sdpRow);
+    }
+
+    @Benchmark
+    public IceCandidate mapIceCandidate() throws SQLException {
+        return SignalingDao.mapResultSetToCandidate(candidateRow);
+    }
+}
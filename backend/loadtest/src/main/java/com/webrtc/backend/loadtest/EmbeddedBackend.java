@@ -0,0 +1,66 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * The exploded webapp deployed into an embedded Tomcat, as it would be in production:
+ * annotations are scanned, the WebSocket endpoints are registered and the lifecycle
+ * listener starts and stops the backend's services.
+ */
+class EmbeddedBackend implements AutoCloseable {
+
+    static final String CONTEXT_PATH = "/WebRTC_BackEnd";
+
+    private final Tomcat tomcat = new Tomcat();
+    private final Context context;
+
+    EmbeddedBackend(File webappDir, int port, int maxThreads) throws Exception {
+        tomcat.setBaseDir(Files.createTempDirectory("webrtc-loadtest").toString());
+        // No JSP support in the embedded container; only the API and WebSocket endpoints are used
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        Connector connector = tomcat.getConnector();
+        connector.setPort(port);
+        connector.setProperty("maxThreads", Integer.toString(maxThreads));
+        context = tomcat.addWebapp(CONTEXT_PATH, webappDir.getAbsolutePath());
+        // Requests no servlet maps get no filter chain, so the WebSocket upgrade filter
+        // would never see /signaling and /ws/chat without a default servlet
+        Tomcat.addServlet(context, "default", "org.apache.catalina.servlets.DefaultServlet");
+        context.addServletMappingDecoded("/", "default");
+        tomcat.start();
+        if (!context.getState().isAvailable()) {
+            close();
+            throw new IllegalStateException("Webapp failed to start, see the log above");
+        }
+    }
+
+    String getBaseUrl() {
+        return "http://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+    }
+
+    String getWebSocketUrl() {
+        return "ws://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+    }
+
+    /**
+     * The backend's connection pool. Its classes live in the webapp's class loader, so it is
+     * reached reflectively; see {@link PoolSampler}.
+     */
+    Object getConnectionPool() throws ReflectiveOperationException {
+        Class<?> databaseUtil = context.getLoader().getClassLoader().loadClass("com.webrtc.backend.util.DatabaseUtil");
+        Method getDataSource = databaseUtil.getMethod("getDataSource");
+        return getDataSource.invoke(null);
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
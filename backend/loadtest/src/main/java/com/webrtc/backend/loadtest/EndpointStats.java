@@ -0,0 +1,64 @@
+package com.webrtc.backend.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency distribution and status codes of one endpoint, shared by all virtual users.
+ */
+class EndpointStats {
+
+    /** Status recorded when the request failed before a response arrived. */
+    static final int IO_ERROR = -1;
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String name;
+    private final Histogram latencyMicros = new ConcurrentHistogram(MAX_MICROS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(int status, long nanos) {
+        latencyMicros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_MICROS));
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getCount() {
+        return latencyMicros.getTotalCount();
+    }
+
+    /**
+     * @return the latency at {@code percentile} (0-100) in milliseconds
+     */
+    double getPercentileMillis(double percentile) {
+        return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double getMaxMillis() {
+        return latencyMicros.getMaxValue() / 1000.0;
+    }
+
+    /**
+     * @return status code to count, in code order, {@link #IO_ERROR} first
+     */
+    Map<Integer, Long> getStatuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,164 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of the servlet layer: starts the webapp in an embedded Tomcat against a
+ * MySQL-compatible stand-in database and runs {@code N} concurrent {@link VirtualUser}s, then
+ * reports throughput and p50/p99/p99.9 latency per endpoint and the DB connection pool usage.
+ *
+ * Each user logs in once while the load warms up; those logins are all recorded, everything
+ * else only while measuring. Raise {@code -Dloadtest.users} (or lower the think time) between runs to find the point where
+ * latency climbs and throughput stops growing. Settings, as {@code -D} properties:
+ * <ul>
+ * <li>{@code loadtest.users} concurrent users, in caller/callee pairs (default 50)</li>
+ * <li>{@code loadtest.warmupSeconds} load before measuring starts (default 10)</li>
+ * <li>{@code loadtest.durationSeconds} measured load (default 60)</li>
+ * <li>{@code loadtest.thinkTimeMillis} pause between a user's iterations (default 100)</li>
+ * <li>{@code loadtest.sdpSize} size of the SDP offers sent (default 4096)</li>
+ * <li>{@code loadtest.chatHistory} messages seeded per pair (default 200)</li>
+ * <li>{@code loadtest.webapp} exploded webapp (default ../target/WebRTC_BackEnd)</li>
+ * <li>{@code loadtest.port} HTTP port, 0 for any free one (default 0)</li>
+ * <li>{@code loadtest.maxThreads} Tomcat request threads (default 200, Tomcat's own default)</li>
+ * </ul>
+ * The backend's {@code webrtc.*} properties apply as usual; {@code webrtc.db.url} defaults to
+ * an in-process H2 database in MySQL mode.
+ */
+public class LoadTest {
+
+    private static final String[] ENDPOINTS = {
+        "login", "heartbeat", "online-users", "send-sdp", "get-sdp",
+        "send-candidate", "get-candidates", "chat-history", "unread-count",
+    };
+
+    /** Shared by the virtual users: whether to keep going and whether to record. */
+    static class Phase {
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+
+        boolean isRunning() {
+            return running;
+        }
+
+        boolean isMeasuring() {
+            return measuring;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("loadtest.users", 50);
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 60);
+        long thinkTimeMillis = Long.getLong("loadtest.thinkTimeMillis", 100L);
+        int sdpSize = Integer.getInteger("loadtest.sdpSize", 4096);
+        int chatHistory = Integer.getInteger("loadtest.chatHistory", 200);
+        File webappDir = new File(System.getProperty("loadtest.webapp", "../target/WebRTC_BackEnd"));
+        int port = Integer.getInteger("loadtest.port", 0);
+        int maxThreads = Integer.getInteger("loadtest.maxThreads", 200);
+
+        if (System.getProperty("webrtc.db.url") == null) {
+            System.setProperty("webrtc.db.url", StandInDatabase.H2_URL);
+        }
+        // The schema is prepared here before the backend starts
+        if (System.getProperty("webrtc.db.migrate") == null) {
+            System.setProperty("webrtc.db.migrate", "false");
+        }
+        // Let every user keep its connection alive instead of the JDK's default of 5
+        System.setProperty("http.maxConnections", Integer.toString(users));
+
+        StandInDatabase database = new StandInDatabase(System.getProperty("webrtc.db.url"),
+                System.getProperty("webrtc.db.user", "root"), System.getProperty("webrtc.db.password", "root"));
+        database.migrate(webappDir);
+        List<StandInDatabase.SeededUser> seeded = database.seed(users, chatHistory);
+        System.out.println("Seeded " + seeded.size() + " users on " + (database.isH2() ? "H2 (MySQL mode)" : "the configured database"));
+
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (String endpoint : ENDPOINTS) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+
+        try (EmbeddedBackend backend = new EmbeddedBackend(webappDir, port, maxThreads)) {
+            PoolSampler poolSampler = new PoolSampler(backend.getConnectionPool());
+            Phase phase = new Phase();
+            String sdp = sdp(sdpSize);
+
+            List<Thread> threads = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                StandInDatabase.SeededUser user = seeded.get(i);
+                // Pairs call each other; an odd one out calls itself
+                StandInDatabase.SeededUser peer = seeded.get(i % 2 == 0 ? Math.min(i + 1, users - 1) : i - 1);
+                Thread thread = new Thread(new VirtualUser(backend.getBaseUrl(), user.id, peer.id, user.msisdn,
+                        sdp, thinkTimeMillis, stats, phase), "virtual-user-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+
+            System.out.println("Running " + users + " users against " + backend.getBaseUrl()
+                    + ": " + warmupSeconds + " s warmup, " + durationSeconds + " s measured");
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+
+            Thread samplerThread = new Thread(poolSampler, "pool-sampler");
+            samplerThread.setDaemon(true);
+            phase.measuring = true;
+            samplerThread.start();
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            phase.measuring = false;
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            poolSampler.stop();
+
+            phase.running = false;
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+            samplerThread.join();
+
+            report(stats, elapsedSeconds);
+            System.out.println(poolSampler.report());
+        }
+    }
+
+    private static void report(Map<String, EndpointStats> stats, double elapsedSeconds) {
+        System.out.println();
+        System.out.println(String.format("%-16s %10s %10s %9s %9s %9s %9s  %s",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "status codes"));
+        long total = 0;
+        for (EndpointStats endpoint : stats.values()) {
+            total += endpoint.getCount();
+            StringBuilder statuses = new StringBuilder();
+            for (Map.Entry<Integer, Long> status : endpoint.getStatuses().entrySet()) {
+                statuses.append(status.getKey() == EndpointStats.IO_ERROR ? "io-error" : status.getKey().toString())
+                        .append('=').append(status.getValue()).append(' ');
+            }
+            System.out.println(String.format("%-16s %10d %10.1f %9.2f %9.2f %9.2f %9.2f  %s",
+                    endpoint.getName(), endpoint.getCount(), endpoint.getCount() / elapsedSeconds,
+                    endpoint.getPercentileMillis(50), endpoint.getPercentileMillis(99),
+                    endpoint.getPercentileMillis(99.9), endpoint.getMaxMillis(), statuses.toString().trim()));
+        }
+        System.out.println(String.format("%-16s %10d %10.1f", "total", total, total / elapsedSeconds));
+        System.out.println();
+    }
+
+    /**
+     * @return an SDP offer of roughly {@code size} characters, JSON-escaped
+     */
+    private static String sdp(int size) {
+        String lines = "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n"
+                + "a=group:BUNDLE 0\\r\\nm=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8\\r\\n"
+                + "c=IN IP4 0.0.0.0\\r\\na=ice-ufrag:F7gI\\r\\na=ice-pwd:x9cml/YzichV2+XlhiMu8g\\r\\n"
+                + "a=rtpmap:111 opus/48000/2\\r\\na=fmtp:111 minptime=10;useinbandfec=1\\r\\n";
+        StringBuilder sdp = new StringBuilder(size + lines.length());
+        while (sdp.length() < size) {
+            sdp.append(lines);
+        }
+        return sdp.toString();
+    }
+}
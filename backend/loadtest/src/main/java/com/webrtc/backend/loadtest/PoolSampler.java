@@ -0,0 +1,73 @@
+package com.webrtc.backend.loadtest;
+
+import java.lang.reflect.Method;
+
+/**
+ * Samples the backend's connection pool while the load runs: how many connections are in use
+ * and how many requests wait for one. The borrow wait comes from the pool's own histogram.
+ */
+class PoolSampler implements Runnable {
+
+    private static final long INTERVAL_MILLIS = 100;
+
+    private final Object pool;
+    private final Method activeCount;
+    private final Method waitingCount;
+    private final Method maxSize;
+    private final Method waitTimeHistogram;
+
+    private volatile boolean running = true;
+    private long samples;
+    private long activeSum;
+    private int activeMax;
+    private int waitingMax;
+    private long borrowsAtStart;
+    private double waitSecondsAtStart;
+
+    PoolSampler(Object pool) throws ReflectiveOperationException {
+        this.pool = pool;
+        Class<?> type = pool.getClass();
+        activeCount = type.getMethod("getActiveCount");
+        waitingCount = type.getMethod("getWaitingCount");
+        maxSize = type.getMethod("getMaxSize");
+        waitTimeHistogram = type.getMethod("getWaitTimeHistogram");
+    }
+
+    @Override
+    public void run() {
+        try {
+            Object histogram = waitTimeHistogram.invoke(pool);
+            borrowsAtStart = (Long) histogram.getClass().getMethod("getCount").invoke(histogram);
+            waitSecondsAtStart = (Double) histogram.getClass().getMethod("getSumSeconds").invoke(histogram);
+            while (running) {
+                int active = (Integer) activeCount.invoke(pool);
+                int waiting = (Integer) waitingCount.invoke(pool);
+                synchronized (this) {
+                    samples++;
+                    activeSum += active;
+                    activeMax = Math.max(activeMax, active);
+                    waitingMax = Math.max(waitingMax, waiting);
+                }
+                Thread.sleep(INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Cannot sample the connection pool: " + e);
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    synchronized String report() throws ReflectiveOperationException {
+        Object histogram = waitTimeHistogram.invoke(pool);
+        long borrows = (Long) histogram.getClass().getMethod("getCount").invoke(histogram) - borrowsAtStart;
+        double waitSeconds = (Double) histogram.getClass().getMethod("getSumSeconds").invoke(histogram) - waitSecondsAtStart;
+        return String.format("DB pool: max size %d, in use avg %.1f / max %d, waiting max %d, %d borrows, mean borrow wait %.3f ms",
+                (Integer) maxSize.invoke(pool),
+                samples > 0 ? (double) activeSum / samples : 0.0, activeMax, waitingMax,
+                borrows, borrows > 0 ? waitSeconds * 1000 / borrows : 0.0);
+    }
+}
@@ -0,0 +1,239 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.ContainerProvider;
+import javax.websocket.WebSocketContainer;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Relay throughput of the WebSocket endpoints: opens {@code N} client sockets to
+ * {@code /signaling/{userId}} or {@code /ws/chat/{userId}} on the webapp in an embedded Tomcat,
+ * has every socket send frames to its peer at a fixed total rate, and reports the end-to-end
+ * relay latency distribution, messages per second per core and heap growth.
+ *
+ * Clients run in the same JVM as the server, so CPU and heap figures include both sides.
+ * Settings, as {@code -D} properties:
+ * <ul>
+ * <li>{@code relay.endpoint} {@code signaling} or {@code chat} (default signaling)</li>
+ * <li>{@code relay.connections} client sockets, in pairs (default 2000)</li>
+ * <li>{@code relay.rate} frames per second sent across all sockets (default 2000)</li>
+ * <li>{@code relay.payloadSize} SDP size for signaling, message length for chat (default 4096)</li>
+ * <li>{@code relay.senderThreads} threads sending the frames (default 4)</li>
+ * <li>{@code relay.warmupSeconds} (default 10) and {@code relay.durationSeconds} (default 60)</li>
+ * </ul>
+ * The settings of {@link LoadTest} for the webapp, port and database apply as well.
+ */
+public class RelayBenchmark {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /** Shared by senders and clients: whether to keep going and whether to record. */
+    static class Phase {
+        private final long origin = System.nanoTime();
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+
+        boolean isRunning() {
+            return running;
+        }
+
+        boolean isMeasuring() {
+            return measuring;
+        }
+
+        /** Non-negative timestamp for stamping frames. */
+        long nanos() {
+            return System.nanoTime() - origin;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean chat = "chat".equals(System.getProperty("relay.endpoint", "signaling"));
+        int connections = Integer.getInteger("relay.connections", 2000) & ~1;
+        int rate = Integer.getInteger("relay.rate", 2000);
+        int payloadSize = Integer.getInteger("relay.payloadSize", 4096);
+        int senderThreads = Integer.getInteger("relay.senderThreads", 4);
+        int warmupSeconds = Integer.getInteger("relay.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("relay.durationSeconds", 60);
+        File webappDir = new File(System.getProperty("loadtest.webapp", "../target/WebRTC_BackEnd"));
+        int port = Integer.getInteger("loadtest.port", 0);
+        int maxThreads = Integer.getInteger("loadtest.maxThreads", 200);
+
+        if (System.getProperty("webrtc.db.url") == null) {
+            System.setProperty("webrtc.db.url", StandInDatabase.H2_URL);
+        }
+        if (System.getProperty("webrtc.db.migrate") == null) {
+            System.setProperty("webrtc.db.migrate", "false");
+        }
+        // Chat messages are saved, so every socket needs a user row
+        StandInDatabase database = new StandInDatabase(System.getProperty("webrtc.db.url"),
+                System.getProperty("webrtc.db.user", "root"), System.getProperty("webrtc.db.password", "root"));
+        database.migrate(webappDir);
+        List<StandInDatabase.SeededUser> users = database.seed(connections, 0);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Phase phase = new Phase();
+        Histogram latencyMicros = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        LongAdder received = new LongAdder();
+        LongAdder sent = new LongAdder();
+        LongAdder sendErrors = new LongAdder();
+
+        try (EmbeddedBackend backend = new EmbeddedBackend(webappDir, port, maxThreads)) {
+            long heapBaseline = heapAfterGc(memory);
+
+            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            // Tomcat allocates this buffer per session up front, so it is sized to the frames sent
+            container.setDefaultMaxTextMessageBufferSize(Math.max(8192, payloadSize + 1024));
+            String path = chat ? "/ws/chat/" : "/signaling/";
+            List<RelayClient> clients = new ArrayList<>(connections);
+            for (StandInDatabase.SeededUser user : users) {
+                RelayClient client = new RelayClient(user.id, chat, latencyMicros, received, phase);
+                container.connectToServer(client, ClientEndpointConfig.Builder.create().build(),
+                        URI.create(backend.getWebSocketUrl() + path + user.id));
+                clients.add(client);
+            }
+            long heapConnected = heapAfterGc(memory);
+            System.out.println("Opened " + connections + " sockets to " + path + "{userId}");
+
+            // Each thread owns a disjoint slice of the sockets, so no socket is written concurrently
+            List<Thread> senders = new ArrayList<>(senderThreads);
+            for (int t = 0; t < senderThreads; t++) {
+                List<int[]> slice = new ArrayList<>();
+                for (int i = t; i < connections; i += senderThreads) {
+                    // Pairs talk to each other: 0 <-> 1, 2 <-> 3, ...
+                    slice.add(new int[] {i, i ^ 1});
+                }
+                double threadRate = (double) rate / senderThreads;
+                Thread sender = new Thread(() -> send(slice, clients, users, threadRate, chat, payloadSize, phase, sent, sendErrors),
+                        "relay-sender-" + t);
+                sender.setDaemon(true);
+                senders.add(sender);
+            }
+
+            System.out.println("Sending " + rate + " frames/s of " + payloadSize + " chars: "
+                    + warmupSeconds + " s warmup, " + durationSeconds + " s measured");
+            for (Thread sender : senders) {
+                sender.start();
+            }
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            AtomicLong heapPeak = new AtomicLong();
+            Thread heapSampler = new Thread(() -> {
+                while (phase.isMeasuring()) {
+                    heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                }
+            }, "heap-sampler");
+            heapSampler.setDaemon(true);
+
+            long sentAtStart = sent.sum();
+            long receivedAtStart = received.sum();
+            long cpuAtStart = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            phase.measuring = true;
+            heapSampler.start();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            phase.measuring = false;
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (os.getProcessCpuTime() - cpuAtStart) / 1e9;
+            long sentInWindow = sent.sum() - sentAtStart;
+            long receivedInWindow = received.sum() - receivedAtStart;
+
+            phase.running = false;
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            // Let frames still queued arrive before counting losses
+            TimeUnit.SECONDS.sleep(2);
+            long heapAfterRun = heapAfterGc(memory);
+
+            double receivedPerSecond = receivedInWindow / elapsedSeconds;
+            double coresUsed = cpuSeconds / elapsedSeconds;
+            System.out.println();
+            System.out.println(String.format("Sent %.1f frames/s, relayed %.1f frames/s using %.2f cores: %.1f frames/s per core",
+                    sentInWindow / elapsedSeconds, receivedPerSecond, coresUsed,
+                    coresUsed > 0 ? receivedPerSecond / coresUsed : 0.0));
+            System.out.println(String.format("Relay latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f (%d frames)",
+                    latencyMicros.getValueAtPercentile(50) / 1000.0, latencyMicros.getValueAtPercentile(90) / 1000.0,
+                    latencyMicros.getValueAtPercentile(99) / 1000.0, latencyMicros.getValueAtPercentile(99.9) / 1000.0,
+                    latencyMicros.getMaxValue() / 1000.0, latencyMicros.getTotalCount()));
+            System.out.println(String.format("Frames over the whole run: %d sent, %d relayed, %d not relayed, %d send errors",
+                    sent.sum(), received.sum(), sent.sum() - received.sum(), sendErrors.sum()));
+            System.out.println(String.format("Heap after GC: %.1f MB idle, %.1f MB connected (%.1f KB per socket),"
+                            + " %.1f MB after the run; peak used %.1f MB",
+                    mb(heapBaseline), mb(heapConnected), (heapConnected - heapBaseline) / 1024.0 / connections,
+                    mb(heapAfterRun), mb(heapPeak.get())));
+
+            for (RelayClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private static void send(List<int[]> slice, List<RelayClient> clients, List<StandInDatabase.SeededUser> users,
+                             double rate, boolean chat, int payloadSize, Phase phase, LongAdder sent, LongAdder errors) {
+        String filler = filler(payloadSize, chat);
+        long start = System.nanoTime();
+        long count = 0;
+        int next = 0;
+        while (phase.isRunning()) {
+            long due = (long) ((System.nanoTime() - start) / 1e9 * rate);
+            if (count >= due) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            int[] pair = slice.get(next);
+            next = (next + 1) % slice.size();
+            int senderId = users.get(pair[0]).id;
+            int receiverId = users.get(pair[1]).id;
+            String frame = chat
+                    ? "{\"receiverId\":" + receiverId + ",\"content\":\"" + phase.nanos() + ":" + filler + "\"}"
+                    : "{\"type\":\"offer\",\"payload\":{\"sentAt\":" + phase.nanos() + ",\"senderId\":" + senderId
+                        + ",\"sdp\":{\"type\":\"offer\",\"sdp\":\"" + filler + "\"},\"receiverId\":" + receiverId + "}}";
+            try {
+                clients.get(pair[0]).send(frame);
+                sent.increment();
+            } catch (Exception e) {
+                errors.increment();
+            }
+            count++;
+        }
+    }
+
+    /**
+     * @return SDP lines for signaling or plain text for chat, about {@code size} characters, JSON-safe
+     */
+    private static String filler(int size, boolean chat) {
+        String unit = chat ? "The quick brown fox jumps over the lazy dog. "
+                : "a=candidate:842163049 1 udp 1677729535 203.0.113.7 54321 typ srflx\\r\\n";
+        StringBuilder text = new StringBuilder(size + unit.length());
+        while (text.length() < size) {
+            text.append(unit);
+        }
+        return text.toString();
+    }
+
+    private static long heapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+}
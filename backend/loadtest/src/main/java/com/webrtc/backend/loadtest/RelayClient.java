@@ -0,0 +1,109 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * One client socket of {@link RelayBenchmark}. Sends frames to its peer stamped with
+ * {@link RelayBenchmark.Phase#nanos()}, and records the relay latency of the frames it receives; client
+ * and server share the JVM, so the clocks agree.
+ */
+class RelayClient extends Endpoint implements MessageHandler.Whole<String> {
+
+    private static final String SENT_AT = "\"sentAt\":";
+    private static final String CONTENT = "\"content\":\"";
+    private static final String SENDER_ID = "\"senderId\":";
+
+    private final int userId;
+    private final boolean chat;
+    private final Histogram latencyMicros;
+    private final LongAdder received;
+    private final RelayBenchmark.Phase phase;
+    private volatile Session session;
+
+    RelayClient(int userId, boolean chat, Histogram latencyMicros, LongAdder received, RelayBenchmark.Phase phase) {
+        this.userId = userId;
+        this.chat = chat;
+        this.latencyMicros = latencyMicros;
+        this.received = received;
+        this.phase = phase;
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        this.session = session;
+        session.addMessageHandler(this);
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        if (phase.isRunning()) {
+            System.err.println("Socket of user " + userId + " closed: " + closeReason);
+        }
+    }
+
+    @Override
+    public void onMessage(String frame) {
+        long now = phase.nanos();
+        long sentAt;
+        if (chat) {
+            // The sender gets its own message back once saved; only count the relayed copy
+            if (parseLong(frame, SENDER_ID) == userId) {
+                return;
+            }
+            sentAt = parseLong(frame, CONTENT);
+        } else {
+            sentAt = parseLong(frame, SENT_AT);
+        }
+        if (sentAt < 0) {
+            return; // Presence and other notifications
+        }
+        received.increment();
+        if (phase.isMeasuring()) {
+            latencyMicros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - sentAt), latencyMicros.getHighestTrackableValue()));
+        }
+    }
+
+    /**
+     * Sends one frame, blocking until it is written. Each client is only ever used by one sender thread.
+     */
+    void send(String frame) throws IOException {
+        session.getBasicRemote().sendText(frame);
+    }
+
+    void close() throws IOException {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+    }
+
+    /**
+     * @return the unsigned number right after {@code key}, or -1 if the key is missing
+     */
+    private static long parseLong(String frame, String key) {
+        int i = frame.indexOf(key);
+        if (i < 0) {
+            return -1;
+        }
+        long value = 0;
+        boolean digits = false;
+        for (i += key.length(); i < frame.length(); i++) {
+            char c = frame.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            digits = true;
+        }
+        return digits ? value : -1;
+    }
+}
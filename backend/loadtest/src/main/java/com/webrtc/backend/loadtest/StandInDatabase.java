@@ -0,0 +1,196 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the schema and the load test users and chat history before the backend starts.
+ *
+ * By default the database is an in-process H2 in MySQL mode, so a run needs nothing installed.
+ * Point {@code -Dwebrtc.db.url} (and user/password) at a MySQL or MariaDB server to load the
+ * real thing; users are created idempotently there, so repeated runs reuse them.
+ */
+class StandInDatabase {
+
+    static final String H2_URL = "jdbc:h2:mem:webrtc_loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    static final String PASSWORD = "loadtest";
+
+    // "Index already exists": MySQL ER_DUP_KEYNAME and H2's error code, on a database migrated before
+    private static final int MYSQL_DUPLICATE_KEY_NAME = 1061;
+    private static final int H2_INDEX_ALREADY_EXISTS = 42111;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    StandInDatabase(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    boolean isH2() {
+        return url.startsWith("jdbc:h2:");
+    }
+
+    /**
+     * Applies the webapp's migration scripts in version order. The users are seeded before the
+     * backend starts, so the schema is created here and the backend's own migrator is switched off.
+     */
+    void migrate(File webappDir) throws SQLException, IOException {
+        File[] scripts = new File(webappDir, "WEB-INF/classes/db/migration").listFiles((dir, name) -> name.endsWith(".sql"));
+        if (scripts == null || scripts.length == 0) {
+            throw new IOException("No migration scripts under " + webappDir + "; build the webapp with mvn package first");
+        }
+        Arrays.sort(scripts, (a, b) -> Integer.compare(version(a), version(b)));
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            for (File script : scripts) {
+                for (String sql : statements(script)) {
+                    try {
+                        stmt.execute(sql);
+                    } catch (SQLException e) {
+                        if (e.getErrorCode() != MYSQL_DUPLICATE_KEY_NAME && e.getErrorCode() != H2_INDEX_ALREADY_EXISTS) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int version(File script) {
+        String name = script.getName();
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+
+    private static List<String> statements(File script) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : Files.readAllLines(script.toPath(), StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                current.setLength(current.lastIndexOf(";"));
+                statements.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Creates {@code count} users that log in with {@link #PASSWORD}, and a read chat history of
+     * {@code historyPerPair} messages between each pair of users that call each other.
+     * @return the users, in pairs: 0 calls 1, 2 calls 3, ...
+     */
+    List<SeededUser> seed(int count, int historyPerPair) throws SQLException {
+        List<SeededUser> users = new ArrayList<>(count);
+        try (Connection conn = connect()) {
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT IGNORE INTO users (username, msisdn, password_hash) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    insert.setString(1, "loadtest" + i);
+                    insert.setString(2, msisdn(i));
+                    insert.setString(3, md5(PASSWORD));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement select = conn.prepareStatement("SELECT id FROM users WHERE msisdn = ?")) {
+                for (int i = 0; i < count; i++) {
+                    select.setString(1, msisdn(i));
+                    try (ResultSet rs = select.executeQuery()) {
+                        rs.next();
+                        users.add(new SeededUser(rs.getInt(1), msisdn(i)));
+                    }
+                }
+            }
+            for (int i = 0; i + 1 < count; i += 2) {
+                seedHistory(conn, users.get(i).id, users.get(i + 1).id, historyPerPair);
+            }
+        }
+        return users;
+    }
+
+    private void seedHistory(Connection conn, int userA, int userB, int messages) throws SQLException {
+        try (PreparedStatement existing = conn.prepareStatement(
+                "SELECT COUNT(*) FROM chat_messages WHERE sender_id = ? AND receiver_id = ?")) {
+            existing.setInt(1, userA);
+            existing.setInt(2, userB);
+            try (ResultSet rs = existing.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO chat_messages (sender_id, receiver_id, content, `read`) VALUES (?, ?, ?, TRUE)")) {
+            for (int i = 0; i < messages; i++) {
+                boolean fromA = i % 2 == 0;
+                insert.setInt(1, fromA ? userA : userB);
+                insert.setInt(2, fromA ? userB : userA);
+                insert.setString(3, "Load test message " + i + ", about as long as a typical chat line.");
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        // The whole history is read, so each side's watermark is at its newest message
+        try (PreparedStatement read = conn.prepareStatement(
+                "INSERT INTO chat_read_state (receiver_id, sender_id, last_read_id)"
+                        + " SELECT receiver_id, sender_id, MAX(id) FROM chat_messages"
+                        + " WHERE (sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?)"
+                        + " GROUP BY receiver_id, sender_id")) {
+            read.setInt(1, userA);
+            read.setInt(2, userB);
+            read.setInt(3, userB);
+            read.setInt(4, userA);
+            read.executeUpdate();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private static String msisdn(int index) {
+        return String.format("07%09d", index);
+    }
+
+    /** Same hash as the backend's PasswordUtil. */
+    private static String md5(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes());
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class SeededUser {
+        final int id;
+        final String msisdn;
+
+        SeededUser(int id, String msisdn) {
+            this.id = id;
+            this.msisdn = msisdn;
+        }
+    }
+}
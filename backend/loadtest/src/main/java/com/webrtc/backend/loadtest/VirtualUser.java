@@ -0,0 +1,112 @@
+package com.webrtc.backend.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * One simulated user running the frontend's request loop against the backend: log in once,
+ * then heartbeat, poll the online list, run a call setup handshake with its peer and open
+ * the chat with it, pausing for the think time between iterations.
+ */
+class VirtualUser implements Runnable {
+
+    private final String baseUrl;
+    private final int userId;
+    private final int peerId;
+    private final String msisdn;
+    private final String sdpBody;
+    private final String candidateBody;
+    private final long thinkTimeMillis;
+    private final Map<String, EndpointStats> stats;
+    private final LoadTest.Phase phase;
+    private final byte[] buffer = new byte[8192];
+
+    private String onlineUsersEtag;
+
+    VirtualUser(String baseUrl, int userId, int peerId, String msisdn, String sdp, long thinkTimeMillis,
+                Map<String, EndpointStats> stats, LoadTest.Phase phase) {
+        this.baseUrl = baseUrl;
+        this.userId = userId;
+        this.peerId = peerId;
+        this.msisdn = msisdn;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.stats = stats;
+        this.phase = phase;
+        this.sdpBody = "{\"senderId\":" + userId + ",\"receiverId\":" + peerId
+                + ",\"sdp\":\"" + sdp + "\",\"type\":\"offer\"}";
+        this.candidateBody = "{\"senderId\":" + userId + ",\"receiverId\":" + peerId
+                + ",\"candidate\":\"{\\\"candidate\\\":\\\"candidate:842163049 1 udp 1677729535 203.0.113.7 54321"
+                + " typ srflx raddr 192.168.1.20 rport 54321 generation 0\\\",\\\"sdpMid\\\":\\\"0\\\",\\\"sdpMLineIndex\\\":0}\"}";
+    }
+
+    @Override
+    public void run() {
+        try {
+            request("login", "POST", "/api/auth/login",
+                    "{\"msisdn\":\"" + msisdn + "\",\"password\":\"" + StandInDatabase.PASSWORD + "\"}");
+            while (phase.isRunning()) {
+                request("heartbeat", "POST", "/api/users/heartbeat", "{\"userId\":" + userId + "}");
+                request("online-users", "GET", "/api/users/online", null);
+                request("send-sdp", "POST", "/api/signaling/send-sdp", sdpBody);
+                request("get-sdp", "GET", "/api/signaling/get-sdp?userId=" + userId, null);
+                request("send-candidate", "POST", "/api/signaling/send-candidate", candidateBody);
+                request("get-candidates", "GET", "/api/signaling/get-candidates?userId=" + userId, null);
+                request("chat-history", "GET", "/api/chat/messages?userId1=" + userId + "&userId2=" + peerId, null);
+                request("unread-count", "GET", "/api/chat/unread-count?userId=" + userId, null);
+                if (thinkTimeMillis > 0) {
+                    Thread.sleep(thinkTimeMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void request(String endpoint, String method, String path, String body) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestMethod(method);
+            if (endpoint.equals("online-users") && onlineUsersEtag != null) {
+                // The frontend revalidates the list; unchanged costs a 304
+                conn.setRequestProperty("If-None-Match", onlineUsersEtag);
+            }
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = conn.getResponseCode();
+            if (endpoint.equals("online-users") && status == HttpURLConnection.HTTP_OK) {
+                onlineUsersEtag = conn.getHeaderField("ETag");
+            }
+            drain(status < 400 ? conn.getInputStream() : conn.getErrorStream());
+        } catch (IOException e) {
+            status = EndpointStats.IO_ERROR;
+        }
+        // Logins happen once per user, during the warmup; keep them all
+        if (phase.isMeasuring() || endpoint.equals("login")) {
+            stats.get(endpoint).record(status, System.nanoTime() - start);
+        }
+    }
+
+    /** Reads the body to the end so the connection goes back to the keep-alive cache. */
+    private void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            while (body.read(buffer) != -1) {
+                // Discard
+            }
+        }
+    }
+}
@@ -4,121 +4,300 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.webrtc.backend.metrics.DaoTimer;
+import com.webrtc.backend.metrics.Metrics;
 import com.webrtc.backend.model.ChatMessage;
 import com.webrtc.backend.util.DatabaseUtil;
 
 public class ChatDao {
 
-    public void saveMessage(ChatMessage message) throws SQLException {
-        String sql = "INSERT INTO chat_messages (sender_id, receiver_id, content, `read`) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, message.getSenderId());
-            stmt.setInt(2, message.getReceiverId());
-            stmt.setString(3, message.getContent());
-            stmt.setBoolean(4, message.isRead());
-            stmt.executeUpdate();
-            
-            // Get the generated ID
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    message.setId(rs.getInt(1));
+    private static final DaoTimer SAVE_MESSAGES_TIMER = Metrics.getInstance().daoTimer("ChatDao", "saveMessages");
+    private static final DaoTimer GET_MAX_MESSAGE_ID_TIMER = Metrics.getInstance().daoTimer("ChatDao", "getMaxMessageId");
+    private static final DaoTimer GET_MESSAGES_BEFORE_TIMER = Metrics.getInstance().daoTimer("ChatDao", "getMessagesBefore");
+    private static final DaoTimer GET_MESSAGES_AFTER_TIMER = Metrics.getInstance().daoTimer("ChatDao", "getMessagesAfter");
+    private static final DaoTimer GET_UNREAD_MESSAGES_TIMER = Metrics.getInstance().daoTimer("ChatDao", "getUnreadMessages");
+    private static final DaoTimer MARK_READ_UP_TO_TIMER = Metrics.getInstance().daoTimer("ChatDao", "markReadUpTo");
+    private static final DaoTimer GET_ALL_UNREAD_COUNTS_TIMER = Metrics.getInstance().daoTimer("ChatDao", "getAllUnreadCounts");
+
+    // Checked by QueryPlanVerifier, which runs EXPLAIN on the exact SQL sent
+    static final String GET_MESSAGES_BEFORE_SQL = "SELECT * FROM ("
+            + "(SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id < ? ORDER BY id DESC LIMIT ?)"
+            + " UNION ALL "
+            + "(SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id < ? ORDER BY id DESC LIMIT ?)"
+            + " ORDER BY id DESC LIMIT ?) page ORDER BY id ASC";
+    static final String GET_MESSAGES_AFTER_SQL = "(SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id > ? ORDER BY id ASC LIMIT ?)"
+            + " UNION ALL "
+            + "(SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id > ? ORDER BY id ASC LIMIT ?)"
+            + " ORDER BY id ASC LIMIT ?";
+    // Two primary key lookups; an OR of the two pairs can end up scanning the table
+    static final String GET_READ_WATERMARKS_SQL = "SELECT receiver_id, last_read_id FROM chat_read_state WHERE receiver_id = ? AND sender_id = ?"
+            + " UNION ALL "
+            + "SELECT receiver_id, last_read_id FROM chat_read_state WHERE receiver_id = ? AND sender_id = ?";
+    static final String GET_UNREAD_MESSAGES_SQL = "SELECT m.* FROM chat_unread_counts c"
+            + " JOIN chat_messages m ON m.sender_id = c.sender_id AND m.receiver_id = c.receiver_id"
+            + " LEFT JOIN chat_read_state r ON r.receiver_id = c.receiver_id AND r.sender_id = c.sender_id"
+            + " WHERE c.receiver_id = ? AND c.unread_count > 0 AND m.id > COALESCE(r.last_read_id, 0) AND m.id > ?"
+            + " ORDER BY m.id ASC LIMIT ?";
+    static final String GET_READ_WATERMARK_SQL = "SELECT last_read_id FROM chat_read_state WHERE receiver_id = ? AND sender_id = ?";
+    static final String COUNT_PASSED_SQL = "SELECT COUNT(*) FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id > ? AND id <= ?";
+    static final String MOVE_READ_WATERMARK_SQL = "INSERT INTO chat_read_state (receiver_id, sender_id, last_read_id) VALUES (?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE last_read_id = GREATEST(last_read_id, VALUES(last_read_id))";
+    static final String SUBTRACT_UNREAD_SQL = "UPDATE chat_unread_counts SET unread_count = GREATEST(unread_count - ?, 0) WHERE sender_id = ? AND receiver_id = ?";
+
+    /**
+     * Inserts many messages with a single multi-row INSERT and adds them to chat_unread_counts
+     * in the same transaction. A new message is above its receiver's read watermark, so it is
+     * unread until {@link #markReadUpTo} moves the watermark past it.
+     * Ids and timestamps must already be set on every message.
+     * @return the number of unread messages added per receiver and sender
+     */
+    public Map<Long, Integer> saveMessages(List<ChatMessage> messages) throws SQLException {
+        Map<Long, Integer> unread = new HashMap<>();
+        if (messages.isEmpty()) {
+            return unread;
+        }
+        // `read` is only kept for older schemas; read state lives in chat_read_state
+        StringBuilder sql = new StringBuilder("INSERT INTO chat_messages (id, sender_id, receiver_id, content, `read`, created_at) VALUES ");
+        for (int i = 0; i < messages.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, FALSE, ?)" : ", (?, ?, ?, ?, FALSE, ?)");
+        }
+        for (ChatMessage message : messages) {
+            unread.merge(pairKey(message.getReceiverId(), message.getSenderId()), 1, Integer::sum);
+        }
+
+        SAVE_MESSAGES_TIMER.timeUpdate(() -> {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                conn.setAutoCommit(false);
+                int rows;
+                try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                    int index = 1;
+                    for (ChatMessage message : messages) {
+                        stmt.setInt(index++, message.getId());
+                        stmt.setInt(index++, message.getSenderId());
+                        stmt.setInt(index++, message.getReceiverId());
+                        stmt.setString(index++, message.getContent());
+                        stmt.setTimestamp(index++, message.getCreatedAt());
+                    }
+                    rows = stmt.executeUpdate();
                 }
+                addUnreadCounts(conn, unread);
+                conn.commit();
+                return rows;
             }
+        });
+        return unread;
+    }
+
+    private void addUnreadCounts(Connection conn, Map<Long, Integer> unread) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO chat_unread_counts (receiver_id, sender_id, unread_count) VALUES ");
+        for (int i = 0; i < unread.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE unread_count = unread_count + VALUES(unread_count)");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Map.Entry<Long, Integer> entry : unread.entrySet()) {
+                stmt.setInt(index++, (int) (entry.getKey() >>> 32));
+                stmt.setInt(index++, (int) entry.getKey().longValue());
+                stmt.setInt(index++, entry.getValue());
+            }
+            stmt.executeUpdate();
         }
     }
 
-    public List<ChatMessage> getMessages(int userId1, int userId2) throws SQLException {
-        String sql = "SELECT * FROM chat_messages WHERE (sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?) ORDER BY created_at ASC";
-        List<ChatMessage> messages = new ArrayList<>();
+    /**
+     * Key for a (receiver, sender) pair in the maps returned by {@link #saveMessages(List)}.
+     */
+    public static long pairKey(int receiverId, int senderId) {
+        return ((long) receiverId << 32) | (senderId & 0xFFFFFFFFL);
+    }
 
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    public int getMaxMessageId() throws SQLException {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM chat_messages";
+        return GET_MAX_MESSAGE_ID_TIMER.time(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }, maxId -> 1);
+    }
+
+    /**
+     * Keyset page of a conversation: up to {@code limit} messages with an id below {@code beforeId},
+     * the newest of them, returned oldest first. Pass {@link Integer#MAX_VALUE} for the latest page.
+     * Each direction of the conversation is read as its own index range and the two are merged.
+     */
+    public List<ChatMessage> getMessagesBefore(int userId1, int userId2, int beforeId, int limit) throws SQLException {
+        // The inner query picks the newest rows, the outer one puts them oldest first
+        return GET_MESSAGES_BEFORE_TIMER.time(
+                () -> readPage(GET_MESSAGES_BEFORE_SQL, userId1, userId2, beforeId, limit), List::size);
+    }
+
+    /**
+     * Keyset page of a conversation: up to {@code limit} messages with an id above {@code afterId},
+     * oldest first. Used to catch up on messages newer than the last one a client has.
+     */
+    public List<ChatMessage> getMessagesAfter(int userId1, int userId2, int afterId, int limit) throws SQLException {
+        return GET_MESSAGES_AFTER_TIMER.time(
+                () -> readPage(GET_MESSAGES_AFTER_SQL, userId1, userId2, afterId, limit), List::size);
+    }
+
+    private List<ChatMessage> readPage(String sql, int userId1, int userId2, int cursor, int limit) throws SQLException {
+        List<ChatMessage> messages = new ArrayList<>(limit);
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            Map<Integer, Integer> readUpTo = getReadWatermarks(conn, userId1, userId2);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, userId1);
+                stmt.setInt(2, userId2);
+                stmt.setInt(3, cursor);
+                stmt.setInt(4, limit);
+                stmt.setInt(5, userId2);
+                stmt.setInt(6, userId1);
+                stmt.setInt(7, cursor);
+                stmt.setInt(8, limit);
+                stmt.setInt(9, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ChatMessage message = mapResultSetToMessage(rs);
+                        message.setRead(message.getId() <= readUpTo.getOrDefault(message.getReceiverId(), 0));
+                        messages.add(message);
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @return the read watermark of each side of the conversation, keyed by receiver; absent if nothing was read
+     */
+    private Map<Integer, Integer> getReadWatermarks(Connection conn, int userId1, int userId2) throws SQLException {
+        Map<Integer, Integer> watermarks = new HashMap<>(4);
+        try (PreparedStatement stmt = conn.prepareStatement(GET_READ_WATERMARKS_SQL)) {
             stmt.setInt(1, userId1);
             stmt.setInt(2, userId2);
             stmt.setInt(3, userId2);
             stmt.setInt(4, userId1);
-
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    ChatMessage message = mapResultSetToMessage(rs);
-                    messages.add(message);
+                    watermarks.put(rs.getInt("receiver_id"), rs.getInt("last_read_id"));
                 }
             }
         }
-        return messages;
+        return watermarks;
     }
 
-    public List<ChatMessage> getUnreadMessages(int userId) throws SQLException {
-        String sql = "SELECT * FROM chat_messages WHERE receiver_id = ? AND `read` = FALSE ORDER BY created_at ASC";
-        List<ChatMessage> messages = new ArrayList<>();
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    ChatMessage message = mapResultSetToMessage(rs);
-                    messages.add(message);
+    /**
+     * Keyset page of a user's unread messages: up to {@code limit} with an id above {@code afterId},
+     * oldest first. Only senders with a non-zero counter are looked at, each from just above its
+     * read watermark.
+     */
+    public List<ChatMessage> getUnreadMessages(int userId, int afterId, int limit) throws SQLException {
+        return GET_UNREAD_MESSAGES_TIMER.time(() -> {
+            List<ChatMessage> messages = new ArrayList<>(limit);
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(GET_UNREAD_MESSAGES_SQL)) {
+                stmt.setInt(1, userId);
+                stmt.setInt(2, afterId);
+                stmt.setInt(3, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(mapResultSetToMessage(rs));
+                    }
                 }
             }
-        }
-        return messages;
+            return messages;
+        }, List::size);
     }
 
-    public void markAsRead(int messageId) throws SQLException {
-        String sql = "UPDATE chat_messages SET `read` = TRUE WHERE id = ?";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, messageId);
-            stmt.executeUpdate();
-        }
+    /**
+     * Moves the receiver's read watermark for the sender forward to {@code upToId} and takes the
+     * messages it passes off the unread counter, in one transaction. No message row is written.
+     * @return the number of messages that were unread
+     */
+    public int markReadUpTo(int senderId, int receiverId, int upToId) throws SQLException {
+        return MARK_READ_UP_TO_TIMER.timeUpdate(() -> {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                conn.setAutoCommit(false);
+                int lastReadId = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(GET_READ_WATERMARK_SQL)) {
+                    stmt.setInt(1, receiverId);
+                    stmt.setInt(2, senderId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            lastReadId = rs.getInt(1);
+                        }
+                    }
+                }
+                if (upToId <= lastReadId) {
+                    conn.commit();
+                    return 0; // Already read
+                }
+                int marked;
+                try (PreparedStatement stmt = conn.prepareStatement(COUNT_PASSED_SQL)) {
+                    stmt.setInt(1, senderId);
+                    stmt.setInt(2, receiverId);
+                    stmt.setInt(3, lastReadId);
+                    stmt.setInt(4, upToId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        marked = rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(MOVE_READ_WATERMARK_SQL)) {
+                    stmt.setInt(1, receiverId);
+                    stmt.setInt(2, senderId);
+                    stmt.setInt(3, upToId);
+                    stmt.executeUpdate();
+                }
+                if (marked > 0) {
+                    try (PreparedStatement stmt = conn.prepareStatement(SUBTRACT_UNREAD_SQL)) {
+                        stmt.setInt(1, marked);
+                        stmt.setInt(2, senderId);
+                        stmt.setInt(3, receiverId);
+                        stmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return marked;
+            }
+        });
     }
 
-    public void markAllAsRead(int senderId, int receiverId) throws SQLException {
-        String sql = "UPDATE chat_messages SET `read` = TRUE WHERE sender_id = ? AND receiver_id = ? AND `read` = FALSE";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, senderId);
-            stmt.setInt(2, receiverId);
-            stmt.executeUpdate();
-        }
+    /**
+     * Reads the materialized counters, used to rebuild them in memory at startup.
+     * @return unread counts above zero, keyed by {@link #pairKey(int, int)}
+     */
+    public Map<Long, Integer> getAllUnreadCounts() throws SQLException {
+        String sql = "SELECT receiver_id, sender_id, unread_count FROM chat_unread_counts WHERE unread_count > 0";
+        return GET_ALL_UNREAD_COUNTS_TIMER.time(() -> {
+            Map<Long, Integer> unreadCounts = new HashMap<>();
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    unreadCounts.put(pairKey(rs.getInt("receiver_id"), rs.getInt("sender_id")), rs.getInt("unread_count"));
+                }
+            }
+            return unreadCounts;
+        }, Map::size);
     }
 
-    private ChatMessage mapResultSetToMessage(ResultSet rs) throws SQLException {
+    // Package-private and static so the benchmarks can map rows without a database.
+    // Leaves the message unread; callers that know the watermark set it.
+    static ChatMessage mapResultSetToMessage(ResultSet rs) throws SQLException {
         ChatMessage message = new ChatMessage();
         message.setId(rs.getInt("id"));
         message.setSenderId(rs.getInt("sender_id"));
         message.setReceiverId(rs.getInt("receiver_id"));
         message.setContent(rs.getString("content"));
-        message.setRead(rs.getBoolean("read"));
         message.setCreatedAt(rs.getTimestamp("created_at"));
         return message;
     }
-
-    public Map<Integer, Integer> getUnreadMessageCounts(int receiverId) throws SQLException {
-        String sql = "SELECT sender_id, COUNT(*) as unread_count FROM chat_messages WHERE receiver_id = ? AND `read` = FALSE GROUP BY sender_id";
-        Map<Integer, Integer> unreadCounts = new HashMap<>();
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, receiverId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    int senderId = rs.getInt("sender_id");
-                    int count = rs.getInt("unread_count");
-                    unreadCounts.put(senderId, count);
-                }
-            }
-        }
-        return unreadCounts;
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.webrtc.backend.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs EXPLAIN on the queries the DAOs issue per request and reports any that the optimizer
+ * would answer with a full table scan.
+ *
+ * The SQL is the DAOs' own constants, bound to sample values, so a changed query is checked
+ * as it is sent. On MySQL and MariaDB a table read without a chosen {@code key} counts as a
+ * scan, even when EXPLAIN lists possible keys the optimizer passed over. On H2 (the in-process
+ * stand-in the load test uses) it is a table the plan reads with {@code tableScan}.
+ *
+ * {@code QueryPlanTest} runs it in the build; {@code -Dwebrtc.db.verifyQueryPlans=true} runs
+ * it at startup and logs the result.
+ */
+public class QueryPlanVerifier {
+
+    private static final Check[] CHECKS = {
+        // ChatDao
+        new Check("ChatDao.getMessagesBefore", ChatDao.GET_MESSAGES_BEFORE_SQL, 1, 2, 1000, 50, 2, 1, 1000, 50, 50),
+        new Check("ChatDao.getMessagesAfter", ChatDao.GET_MESSAGES_AFTER_SQL, 1, 2, 10, 50, 2, 1, 10, 50, 50),
+        new Check("ChatDao.getReadWatermarks", ChatDao.GET_READ_WATERMARKS_SQL, 1, 2, 2, 1),
+        new Check("ChatDao.getUnreadMessages", ChatDao.GET_UNREAD_MESSAGES_SQL, 1, 10, 200),
+        new Check("ChatDao.markReadUpTo (watermark)", ChatDao.GET_READ_WATERMARK_SQL, 1, 2),
+        new Check("ChatDao.markReadUpTo (count)", ChatDao.COUNT_PASSED_SQL, 2, 1, 10, 1000),
+        new Check("ChatDao.markReadUpTo (counter)", ChatDao.SUBTRACT_UNREAD_SQL, 1, 2, 1),
+        // MOVE_READ_WATERMARK_SQL is a single-row upsert on the primary key; it reads nothing to plan
+
+        // SignalingDao
+        new Check("SignalingDao.updateSdpStatus", SignalingDao.UPDATE_SDP_STATUS_SQL, "accepted", 1, 2),
+
+        // UserDao
+        new Check("UserDao.getUserByUsername", UserDao.GET_USER_BY_USERNAME_SQL, "alice"),
+        new Check("UserDao.getUserByMsisdn", UserDao.GET_USER_BY_MSISDN_SQL, "0100000001"),
+        new Check("UserDao.getUserById", UserDao.GET_USER_BY_ID_SQL, 1),
+        new Check("UserDao.getOnlineUsers", UserDao.GET_ONLINE_USERS_SQL),
+        new Check("UserDao.updateOnlineStatus", UserDao.UPDATE_ONLINE_STATUS_SQL_PREFIX + "?, ?, ?)", true, 1, 2, 3),
+    };
+
+    /**
+     * @return one line per query that would scan a whole table, empty if every query uses an index
+     */
+    public static List<String> verify(Connection conn) throws SQLException {
+        boolean h2 = "H2".equals(conn.getMetaData().getDatabaseProductName());
+        List<String> problems = new ArrayList<>();
+        for (Check check : CHECKS) {
+            try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + check.sql)) {
+                for (int i = 0; i < check.params.length; i++) {
+                    stmt.setObject(i + 1, check.params[i]);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (h2) {
+                        verifyH2(check, rs, problems);
+                    } else {
+                        verifyMySql(check, rs, problems);
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * H2 returns the plan as one statement, with each table access annotated as
+     * {@code /* schema.index: condition *}{@code /} or {@code /* schema.table.tableScan *}{@code /}.
+     */
+    private static void verifyH2(Check check, ResultSet rs, List<String> problems) throws SQLException {
+        while (rs.next()) {
+            String plan = rs.getString(1);
+            int at = plan.indexOf(".tableScan");
+            while (at >= 0) {
+                int from = plan.lastIndexOf('.', at - 1) + 1;
+                problems.add(check.name + ": full scan of " + plan.substring(from, at));
+                at = plan.indexOf(".tableScan", at + 1);
+            }
+        }
+    }
+
+    private static void verifyMySql(Check check, ResultSet rs, List<String> problems) throws SQLException {
+        while (rs.next()) {
+            String table = rs.getString("table");
+            // <union1,2>, <derived2> and similar are the optimizer's own temporary tables; no
+            // table at all means the optimizer answered without reading one
+            if (table == null || table.startsWith("<")) {
+                continue;
+            }
+            if (rs.getString("key") == null) {
+                problems.add(check.name + ": full scan of " + table + " (access type " + rs.getString("type")
+                        + ", possible keys " + rs.getString("possible_keys") + ")");
+            }
+        }
+    }
+
+    private static final class Check {
+        final String name;
+        final String sql;
+        final Object[] params;
+
+        Check(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+}
@@ -5,144 +5,157 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import com.webrtc.backend.metrics.DaoTimer;
+import com.webrtc.backend.metrics.Metrics;
 import com.webrtc.backend.model.User;
 import com.webrtc.backend.util.DatabaseUtil;
 import com.webrtc.backend.util.PasswordUtil;
 
 public class UserDao {
 
+    private static final DaoTimer CREATE_USER_TIMER = Metrics.getInstance().daoTimer("UserDao", "createUser");
+    private static final DaoTimer GET_USER_BY_USERNAME_TIMER = Metrics.getInstance().daoTimer("UserDao", "getUserByUsername");
+    private static final DaoTimer GET_USER_BY_MSISDN_TIMER = Metrics.getInstance().daoTimer("UserDao", "getUserByMsisdn");
+    private static final DaoTimer GET_ONLINE_USERS_TIMER = Metrics.getInstance().daoTimer("UserDao", "getOnlineUsers");
+    private static final DaoTimer UPDATE_ONLINE_STATUS_TIMER = Metrics.getInstance().daoTimer("UserDao", "updateOnlineStatus");
+    private static final DaoTimer GET_USER_BY_ID_TIMER = Metrics.getInstance().daoTimer("UserDao", "getUserById");
+
+    // Checked by QueryPlanVerifier, which runs EXPLAIN on the exact SQL sent
+    static final String GET_USER_BY_USERNAME_SQL = "SELECT * FROM users WHERE username = ?";
+    static final String GET_USER_BY_MSISDN_SQL = "SELECT * FROM users WHERE msisdn = ?";
+    static final String GET_ONLINE_USERS_SQL = "SELECT id, username FROM users WHERE online = TRUE";
+    static final String GET_USER_BY_ID_SQL = "SELECT * FROM users WHERE id = ?";
+    // Followed by one placeholder per user id and a closing parenthesis
+    static final String UPDATE_ONLINE_STATUS_SQL_PREFIX = "UPDATE users SET online = ? WHERE id IN (";
+
     public void createUser(User user) throws SQLException {
         String hashedPassword = PasswordUtil.hashPassword(user.getPassword());
         String sql = "INSERT INTO users (username, password_hash, msisdn) VALUES (?, ?, ?)";
         
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, user.getUsername());
-            stmt.setString(2, hashedPassword);
-            stmt.setString(3, user.getMsisdn());
-            stmt.executeUpdate();
-        }
+        CREATE_USER_TIMER.timeUpdate(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, user.getUsername());
+                stmt.setString(2, hashedPassword);
+                stmt.setString(3, user.getMsisdn());
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     public User getUserByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM users WHERE username = ?";
-        User user = null;
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, username);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    user = new User();
-                    user.setId(rs.getInt("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPasswordHash(rs.getString("password_hash"));
-                    user.setMsisdn(rs.getString("msisdn"));
-                    user.setOnline(rs.getBoolean("online"));
-                    user.setLastUpdate(rs.getTimestamp("last_update"));
-                    user.setCreatedAt(rs.getTimestamp("created_at"));
+        return GET_USER_BY_USERNAME_TIMER.time(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(GET_USER_BY_USERNAME_SQL)) {
+                stmt.setString(1, username);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        User user = new User();
+                        user.setId(rs.getInt("id"));
+                        user.setUsername(rs.getString("username"));
+                        user.setPasswordHash(rs.getString("password_hash"));
+                        user.setMsisdn(rs.getString("msisdn"));
+                        user.setOnline(rs.getBoolean("online"));
+                        user.setLastUpdate(rs.getTimestamp("last_update"));
+                        user.setCreatedAt(rs.getTimestamp("created_at"));
+                        return user;
+                    }
                 }
             }
-        }
-        return user;
+            return null;
+        }, user -> user != null ? 1 : 0);
     }
 
     public User getUserByMsisdn(String msisdn) throws SQLException {
-        String sql = "SELECT * FROM users WHERE msisdn = ?";
-        User user = null;
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, msisdn);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    user = new User();
-                    user.setId(rs.getInt("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPasswordHash(rs.getString("password_hash"));
-                    user.setMsisdn(rs.getString("msisdn"));
-                    user.setOnline(rs.getBoolean("online"));
-                    user.setLastUpdate(rs.getTimestamp("last_update"));
-                    user.setCreatedAt(rs.getTimestamp("created_at"));
+        return GET_USER_BY_MSISDN_TIMER.time(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(GET_USER_BY_MSISDN_SQL)) {
+                stmt.setString(1, msisdn);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        User user = new User();
+                        user.setId(rs.getInt("id"));
+                        user.setUsername(rs.getString("username"));
+                        user.setPasswordHash(rs.getString("password_hash"));
+                        user.setMsisdn(rs.getString("msisdn"));
+                        user.setOnline(rs.getBoolean("online"));
+                        user.setLastUpdate(rs.getTimestamp("last_update"));
+                        user.setCreatedAt(rs.getTimestamp("created_at"));
+                        return user;
+                    }
                 }
             }
-        }
-        return user;
+            return null;
+        }, user -> user != null ? 1 : 0);
     }
 
     public java.util.List<User> getOnlineUsers() throws SQLException {
-        String sql = "SELECT id, username FROM users WHERE online = TRUE";
-        java.util.List<User> onlineUsers = new java.util.ArrayList<>();
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                User user = new User();
-                user.setId(rs.getInt("id"));
-                user.setUsername(rs.getString("username"));
-                onlineUsers.add(user);
-            }
-        }
-        return onlineUsers;
-    }
-
-    public void updateOfflineUsers(int timeoutInMinutes) throws SQLException {
-        // This query updates users to 'offline' if their last_update timestamp is older than the specified timeout.
-        String sql = "UPDATE users SET online = FALSE WHERE online = TRUE AND last_update < NOW() - INTERVAL ? MINUTE";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, timeoutInMinutes);
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Set " + affectedRows + " user(s) to offline.");
+        return GET_ONLINE_USERS_TIMER.time(() -> {
+            java.util.List<User> onlineUsers = new java.util.ArrayList<>();
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(GET_ONLINE_USERS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    User user = new User();
+                    user.setId(rs.getInt("id"));
+                    user.setUsername(rs.getString("username"));
+                    onlineUsers.add(user);
+                }
             }
-        }
+            return onlineUsers;
+        }, java.util.List::size);
     }
 
-    public void updateUserHeartbeat(int userId) throws SQLException {
-        // This query updates the user's online status to TRUE, which also implicitly
-        // updates the last_update timestamp due to the table's ON UPDATE CURRENT_TIMESTAMP definition.
-        String sql = "UPDATE users SET online = TRUE WHERE id = ?";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.executeUpdate();
+    /**
+     * Sets the online flag for many users in a single statement.
+     * @return the number of rows that actually changed
+     */
+    public int updateOnlineStatus(java.util.Collection<Integer> userIds, boolean online) throws SQLException {
+        if (userIds.isEmpty()) {
+            return 0;
         }
-    }
-
-    public void setUserOffline(int userId) throws SQLException {
-        String sql = "UPDATE users SET online = FALSE WHERE id = ?";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.executeUpdate();
+        StringBuilder sql = new StringBuilder(UPDATE_ONLINE_STATUS_SQL_PREFIX);
+        for (int i = 0; i < userIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
         }
+        sql.append(")");
+
+        return UPDATE_ONLINE_STATUS_TIMER.timeUpdate(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                stmt.setBoolean(1, online);
+                int index = 2;
+                for (Integer userId : userIds) {
+                    stmt.setInt(index++, userId);
+                }
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     public User getUserById(int userId) throws SQLException {
-        String sql = "SELECT * FROM users WHERE id = ?";
-        User user = null;
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    user = new User();
-                    user.setId(rs.getInt("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setMsisdn(rs.getString("msisdn"));
-                    user.setOnline(rs.getBoolean("online"));
-                    user.setLastUpdate(rs.getTimestamp("last_update"));
-                    user.setCreatedAt(rs.getTimestamp("created_at"));
+        return GET_USER_BY_ID_TIMER.time(() -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(GET_USER_BY_ID_SQL)) {
+                stmt.setInt(1, userId);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        User user = new User();
+                        user.setId(rs.getInt("id"));
+                        user.setUsername(rs.getString("username"));
+                        user.setMsisdn(rs.getString("msisdn"));
+                        user.setOnline(rs.getBoolean("online"));
+                        user.setLastUpdate(rs.getTimestamp("last_update"));
+                        user.setCreatedAt(rs.getTimestamp("created_at"));
+                        return user;
+                    }
                 }
             }
-        }
-        return user;
+            return null;
+        }, user -> user != null ? 1 : 0);
     }
-} 
\ No newline at end of file
+} 
@@ -0,0 +1,53 @@
+package com.webrtc.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call of a DAO method, begun before the connection borrow and committed as it returns;
+ * see {@link DaoTimer}.
+ */
+@Name("com.webrtc.backend.DaoCall")
+@Label("DAO Call")
+@Category({"WebRTC Backend", "Database"})
+@Description("A UserDao, ChatDao or SignalingDao call; the duration includes the connection borrow")
+@StackTrace(false)
+class DaoCallEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(DaoCallEvent.class);
+
+    @Label("Statement")
+    @Description("DAO and method, e.g. ChatDao.getMessagesBefore")
+    String statement;
+
+    @Label("Rows")
+    @Description("Rows read or changed")
+    int rows;
+
+    /**
+     * @return a started event, or null if no recording has the event enabled
+     */
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        DaoCallEvent event = new DaoCallEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object started, String statement, int rows) {
+        DaoCallEvent event = (DaoCallEvent) started;
+        event.end();
+        // False when the call was shorter than the recording's threshold for this event
+        if (event.shouldCommit()) {
+            event.statement = statement;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+}
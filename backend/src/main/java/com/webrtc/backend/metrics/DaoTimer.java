@@ -0,0 +1,97 @@
+package com.webrtc.backend.metrics;
+
+import java.sql.SQLException;
+import java.util.function.ToIntFunction;
+
+import com.webrtc.backend.util.LatencyHistogram;
+
+/**
+ * Times the calls of one DAO method. Held in a static field of the DAO, which runs its body
+ * through the timer:
+ * <pre>
+ * return TIMER.time(() -> { ... return user; }, user -> user != null ? 1 : 0);
+ * int rows = TIMER.timeUpdate(() -> { ... return stmt.executeUpdate(); });
+ * </pre>
+ * The latency histogram is lock-free. While a flight recording is running each call is also
+ * timed as a {@link DaoCallEvent}, see {@link FlightRecording}.
+ */
+public class DaoTimer {
+
+    private final String dao;
+    private final String method;
+    private final String statement;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    DaoTimer(String dao, String method) {
+        this.dao = dao;
+        this.method = method;
+        this.statement = dao + "." + method;
+    }
+
+    /**
+     * A DAO method body: borrows a connection, runs its statements and returns the result.
+     */
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * A DAO method body whose result is the number of rows it read or changed.
+     */
+    @FunctionalInterface
+    public interface SqlUpdate {
+        int call() throws SQLException;
+    }
+
+    /**
+     * Runs and times {@code call}. A call that throws is recorded with zero rows.
+     * @param rows how many rows the result stands for; may be given null
+     */
+    public <T> T time(SqlCall<T> call, ToIntFunction<? super T> rows) throws SQLException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.AVAILABLE ? DaoCallEvent.start() : null;
+        int count = 0;
+        try {
+            T result = call.call();
+            count = rows.applyAsInt(result);
+            return result;
+        } finally {
+            record(start, count, event);
+        }
+    }
+
+    /**
+     * Runs and times {@code call}, which returns the rows it read or changed.
+     */
+    public int timeUpdate(SqlUpdate call) throws SQLException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.AVAILABLE ? DaoCallEvent.start() : null;
+        int count = 0;
+        try {
+            count = call.call();
+            return count;
+        } finally {
+            record(start, count, event);
+        }
+    }
+
+    private void record(long startNanos, int rows, Object event) {
+        latency.record(System.nanoTime() - startNanos);
+        if (event != null) {
+            DaoCallEvent.commit(event, statement, rows);
+        }
+    }
+
+    public String getDao() {
+        return dao;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
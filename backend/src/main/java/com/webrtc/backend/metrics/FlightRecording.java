@@ -0,0 +1,67 @@
+package com.webrtc.backend.metrics;
+
+/**
+ * Entry points of the backend's JFR events: {@link DaoCallEvent}, {@link SignalingRelayEvent}
+ * and {@link PresenceFlushEvent}.
+ *
+ * The events are on whenever a recording is running, e.g. one started with
+ * {@code -XX:StartFlightRecording}, and cost a single flag check when none is. Each is begun
+ * when its work starts and ended when it finishes, so it carries a real JFR duration and the
+ * recording's {@code threshold} setting for the event decides whether it is kept.
+ *
+ * On a Java 8 runtime without JFR the events are skipped, never loaded; callers hold them as
+ * plain {@code Object}s for that reason.
+ */
+public final class FlightRecording {
+
+    static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Starts timing a signaling relay, as the frame is received.
+     * @return the event to pass to {@link #signalingRelay}, or null when no recording wants it
+     */
+    public static Object beginSignalingRelay() {
+        return AVAILABLE ? SignalingRelayEvent.start() : null;
+    }
+
+    /**
+     * Records a relay of {@code payloadLength} characters from one signaling socket to another.
+     * @param event what {@link #beginSignalingRelay()} returned for this frame
+     * @param relayed false if the receiver was not connected or its queue rejected the frame
+     */
+    public static void signalingRelay(Object event, int senderId, int receiverId, int payloadLength, boolean relayed) {
+        if (event != null) {
+            SignalingRelayEvent.commit(event, senderId, receiverId, payloadLength, relayed);
+        }
+    }
+
+    /**
+     * Starts timing one run of the presence flush.
+     * @return the event to pass to {@link #presenceFlush}, or null when no recording wants it
+     */
+    public static Object beginPresenceFlush() {
+        return AVAILABLE ? PresenceFlushEvent.start() : null;
+    }
+
+    /**
+     * Records one run of the presence flush.
+     * @param event what {@link #beginPresenceFlush()} returned for this run
+     */
+    public static void presenceFlush(Object event, int transitions) {
+        if (event != null) {
+            PresenceFlushEvent.commit(event, transitions);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
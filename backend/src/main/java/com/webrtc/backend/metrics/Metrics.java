@@ -0,0 +1,190 @@
+package com.webrtc.backend.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.webrtc.backend.service.ChatMessageWriter;
+import com.webrtc.backend.service.RecentMessageCache;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.ConnectionPool;
+import com.webrtc.backend.util.DatabaseUtil;
+import com.webrtc.backend.websocket.ChatWebSocket;
+import com.webrtc.backend.websocket.OutboundDispatcher;
+import com.webrtc.backend.websocket.SignalingWebSocket;
+
+/**
+ * Registry of the backend's metrics, rendered in the Prometheus text format by
+ * {@link com.webrtc.backend.servlet.MetricsServlet}.
+ *
+ * Routes and DAO timers are registered once and recorded into directly. Everything else
+ * (connection pool, WebSocket sessions, caches, queues) is read from its owner when
+ * the metrics are scraped, so the hot paths carry no extra work for it.
+ */
+public final class Metrics {
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    // "Dao.method" -> timer
+    private final ConcurrentMap<String, DaoTimer> daoTimers = new ConcurrentHashMap<>();
+
+    // Relayed message totals at the previous scrape, for the per-second gauges
+    private long lastScrapeNanos = System.nanoTime();
+    private long lastSignalingRelayed;
+    private long lastChatRelayed;
+    private double signalingRelayedPerSecond;
+    private double chatRelayedPerSecond;
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the metrics of {@code route}, created on first use
+     */
+    public RouteMetrics route(String route) {
+        return routes.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    /**
+     * @return the timer of {@code dao.method}, created on first use
+     */
+    public DaoTimer daoTimer(String dao, String method) {
+        return daoTimers.computeIfAbsent(dao + "." + method, key -> new DaoTimer(dao, method));
+    }
+
+    /**
+     * Writes every metric in the Prometheus text format.
+     */
+    public synchronized void writePrometheus(Writer out) throws IOException {
+        PrometheusWriter prometheus = new PrometheusWriter(out);
+        writeRoutes(prometheus);
+        writeDaoTimers(prometheus);
+        writeWebSockets(prometheus);
+        writeConnectionPool(prometheus);
+        writeChat(prometheus);
+        writeSignaling(prometheus);
+        writeLog(prometheus);
+        out.flush();
+    }
+
+    private void writeRoutes(PrometheusWriter out) throws IOException {
+        Map<String, RouteMetrics> sorted = new TreeMap<>(routes);
+        out.family("webrtc_http_request_duration_seconds", "histogram", "Time to handle an API request, by servlet mapping.");
+        for (RouteMetrics route : sorted.values()) {
+            out.histogram("webrtc_http_request_duration_seconds", route.getLatency(), "route", route.getRoute());
+        }
+        out.family("webrtc_http_responses_total", "counter", "API responses, by servlet mapping and status code.");
+        for (RouteMetrics route : sorted.values()) {
+            for (int status = RouteMetrics.getMinStatus(); status <= RouteMetrics.getMaxStatus(); status++) {
+                long count = route.getResponses(status);
+                if (count > 0) {
+                    out.sample("webrtc_http_responses_total", count, "route", route.getRoute(), "code", Integer.toString(status));
+                }
+            }
+        }
+    }
+
+    private void writeDaoTimers(PrometheusWriter out) throws IOException {
+        out.family("webrtc_dao_call_duration_seconds", "histogram", "Time spent in a DAO method, including the connection borrow.");
+        for (DaoTimer timer : new TreeMap<>(daoTimers).values()) {
+            out.histogram("webrtc_dao_call_duration_seconds", timer.getLatency(), "dao", timer.getDao(), "method", timer.getMethod());
+        }
+    }
+
+    private void writeWebSockets(PrometheusWriter out) throws IOException {
+        long signalingRelayed = SignalingWebSocket.getRelayedMessages();
+        long chatRelayed = ChatWebSocket.getRelayedMessages();
+        long now = System.nanoTime();
+        double seconds = (now - lastScrapeNanos) / 1_000_000_000.0;
+        // Scrapes closer together than a second keep the previous rate rather than a noisy one
+        if (seconds >= 1) {
+            signalingRelayedPerSecond = (signalingRelayed - lastSignalingRelayed) / seconds;
+            chatRelayedPerSecond = (chatRelayed - lastChatRelayed) / seconds;
+            lastSignalingRelayed = signalingRelayed;
+            lastChatRelayed = chatRelayed;
+            lastScrapeNanos = now;
+        }
+
+        out.family("webrtc_ws_open_sessions", "gauge", "Open WebSocket sessions, by endpoint.");
+        out.sample("webrtc_ws_open_sessions", SignalingWebSocket.getOpenSessionCount(), "endpoint", "signaling");
+        out.sample("webrtc_ws_open_sessions", ChatWebSocket.getOpenSessionCount(), "endpoint", "chat");
+        out.family("webrtc_ws_messages_relayed_total", "counter", "Messages relayed to another user's WebSocket, by endpoint.");
+        out.sample("webrtc_ws_messages_relayed_total", signalingRelayed, "endpoint", "signaling");
+        out.sample("webrtc_ws_messages_relayed_total", chatRelayed, "endpoint", "chat");
+        out.family("webrtc_ws_messages_relayed_per_second", "gauge", "Messages relayed per second since the previous scrape, by endpoint.");
+        out.sample("webrtc_ws_messages_relayed_per_second", signalingRelayedPerSecond, "endpoint", "signaling");
+        out.sample("webrtc_ws_messages_relayed_per_second", chatRelayedPerSecond, "endpoint", "chat");
+
+        long queued = 0;
+        for (int depth : OutboundDispatcher.getQueueDepths().values()) {
+            queued += depth;
+        }
+        out.family("webrtc_ws_outbound_queues", "gauge", "Sessions with an outbound queue.");
+        out.sample("webrtc_ws_outbound_queues", OutboundDispatcher.getSessionCount());
+        out.family("webrtc_ws_outbound_queued_messages", "gauge", "Messages waiting in outbound queues, including those being sent.");
+        out.sample("webrtc_ws_outbound_queued_messages", queued);
+        out.family("webrtc_ws_outbound_dropped_total", "counter", "Messages dropped from full outbound queues.");
+        out.sample("webrtc_ws_outbound_dropped_total", OutboundDispatcher.getDroppedMessages());
+        out.family("webrtc_ws_outbound_disconnects_total", "counter", "Sessions closed because their outbound queue was full.");
+        out.sample("webrtc_ws_outbound_disconnects_total", OutboundDispatcher.getDisconnectedSessions());
+    }
+
+    private void writeConnectionPool(PrometheusWriter out) throws IOException {
+        ConnectionPool pool = DatabaseUtil.getDataSource();
+        out.family("webrtc_db_pool_max_connections", "gauge", "Maximum size of the database connection pool.");
+        out.sample("webrtc_db_pool_max_connections", pool.getMaxSize());
+        out.family("webrtc_db_pool_active_connections", "gauge", "Connections currently borrowed from the pool.");
+        out.sample("webrtc_db_pool_active_connections", pool.getActiveCount());
+        out.family("webrtc_db_pool_idle_connections", "gauge", "Open connections waiting in the pool.");
+        out.sample("webrtc_db_pool_idle_connections", pool.getIdleCount());
+        out.family("webrtc_db_pool_waiting_threads", "gauge", "Threads waiting for a connection.");
+        out.sample("webrtc_db_pool_waiting_threads", pool.getWaitingCount());
+        out.family("webrtc_db_pool_wait_seconds", "histogram", "Time spent waiting to borrow a connection.");
+        out.histogram("webrtc_db_pool_wait_seconds", pool.getWaitTimeHistogram());
+    }
+
+    private void writeChat(PrometheusWriter out) throws IOException {
+        RecentMessageCache cache = RecentMessageCache.getInstance();
+        out.family("webrtc_chat_cache_hits_total", "counter", "Latest-page reads served from the recent message cache.");
+        out.sample("webrtc_chat_cache_hits_total", cache.getHits());
+        out.family("webrtc_chat_cache_misses_total", "counter", "Latest-page reads that went to the database.");
+        out.sample("webrtc_chat_cache_misses_total", cache.getMisses());
+        out.family("webrtc_chat_cache_evictions_total", "counter", "Conversations evicted from the recent message cache.");
+        out.sample("webrtc_chat_cache_evictions_total", cache.getEvictions());
+        out.family("webrtc_chat_cache_bytes", "gauge", "Estimated heap held by the recent message cache.");
+        out.sample("webrtc_chat_cache_bytes", cache.getBytes());
+        out.family("webrtc_chat_cache_conversations", "gauge", "Conversations in the recent message cache.");
+        out.sample("webrtc_chat_cache_conversations", cache.getConversationCount());
+        out.family("webrtc_chat_write_queue_depth", "gauge", "Chat messages and read markers waiting to be written.");
+        out.sample("webrtc_chat_write_queue_depth", ChatMessageWriter.getInstance().getQueueDepth());
+    }
+
+    private void writeSignaling(PrometheusWriter out) throws IOException {
+        SignalingMailbox mailbox = SignalingMailbox.getInstance();
+        out.family("webrtc_signaling_mailbox_entries", "gauge", "Offers, answers and ICE candidates waiting in the signaling mailbox.");
+        out.sample("webrtc_signaling_mailbox_entries", mailbox.size());
+        out.family("webrtc_signaling_write_behind_dropped_total", "counter", "Signaling write-behind writes dropped because the queue was full or the write failed.");
+        out.sample("webrtc_signaling_write_behind_dropped_total", mailbox.getDroppedWrites());
+    }
+
+    private void writeLog(PrometheusWriter out) throws IOException {
+        AsyncLog log = AsyncLog.getInstance();
+        out.family("webrtc_log_queue_depth", "gauge", "Log records waiting to be written.");
+        out.sample("webrtc_log_queue_depth", log.getQueueDepth());
+        out.family("webrtc_log_dropped_total", "counter", "Log records dropped because the log ring was full.");
+        out.sample("webrtc_log_dropped_total", log.getDroppedRecords());
+        out.family("webrtc_log_sampled_out_total", "counter", "Log records skipped by sampling, by category.");
+        for (AsyncLog.Category category : log.getCategories()) {
+            out.sample("webrtc_log_sampled_out_total", category.getSampledOut(), "category", category.getName());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.webrtc.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One run of the scheduled presence flush.
+ */
+@Name("com.webrtc.backend.PresenceFlush")
+@Label("Presence Flush")
+@Category({"WebRTC Backend", "Presence"})
+@Description("A UserStatusUpdaterTask run writing queued online/offline transitions")
+@StackTrace(false)
+class PresenceFlushEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(PresenceFlushEvent.class);
+
+    @Label("Transitions")
+    @Description("Online/offline transitions written")
+    int transitions;
+
+    /**
+     * @return a started event, or null if no recording has the event enabled
+     */
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        PresenceFlushEvent event = new PresenceFlushEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object started, int transitions) {
+        PresenceFlushEvent event = (PresenceFlushEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.transitions = transitions;
+            event.commit();
+        }
+    }
+}
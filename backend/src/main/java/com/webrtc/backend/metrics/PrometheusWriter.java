@@ -0,0 +1,84 @@
+package com.webrtc.backend.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.webrtc.backend.util.LatencyHistogram;
+
+/**
+ * Writes samples in the Prometheus text exposition format, version 0.0.4.
+ * Label values are given as name/value pairs.
+ */
+class PrometheusWriter {
+
+    private final Writer out;
+
+    PrometheusWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a metric family; its samples must follow before the next one starts.
+     */
+    void family(String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    void sample(String name, double value, String... labels) throws IOException {
+        out.write(name);
+        writeLabels(labels, null);
+        out.write(" " + format(value) + "\n");
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of a histogram.
+     */
+    void histogram(String name, LatencyHistogram histogram, String... labels) throws IOException {
+        long cumulative = 0;
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            cumulative += histogram.getBucketValue(i);
+            out.write(name + "_bucket");
+            writeLabels(labels, format(histogram.getUpperBoundSeconds(i)));
+            out.write(" " + cumulative + "\n");
+        }
+        out.write(name + "_sum");
+        writeLabels(labels, null);
+        out.write(" " + format(histogram.getSumSeconds()) + "\n");
+        // The count is taken from the same bucket reads, so it always matches the +Inf bucket
+        out.write(name + "_count");
+        writeLabels(labels, null);
+        out.write(" " + cumulative + "\n");
+    }
+
+    private void writeLabels(String[] labels, String le) throws IOException {
+        if (labels.length == 0 && le == null) {
+            return;
+        }
+        out.write('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(labels[i] + "=\"" + escape(labels[i + 1]) + "\"");
+        }
+        if (le != null) {
+            out.write((labels.length > 0 ? "," : "") + "le=\"" + le + "\"");
+        }
+        out.write('}');
+    }
+
+    private static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,55 @@
+package com.webrtc.backend.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.webrtc.backend.util.LatencyHistogram;
+
+/**
+ * Latency and responses per status code of one HTTP route.
+ * Recording is lock-free and allocation-free.
+ */
+public class RouteMetrics {
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final String route;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Index status - MIN_STATUS; anything outside 100-599 is counted as 500
+    private final AtomicLongArray responses = new AtomicLongArray(MAX_STATUS - MIN_STATUS + 1);
+
+    RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    public void record(int status, long nanos) {
+        latency.record(nanos);
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            status = 500;
+        }
+        responses.incrementAndGet(status - MIN_STATUS);
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of responses with {@code status}
+     */
+    public long getResponses(int status) {
+        return status < MIN_STATUS || status > MAX_STATUS ? 0 : responses.get(status - MIN_STATUS);
+    }
+
+    static int getMinStatus() {
+        return MIN_STATUS;
+    }
+
+    static int getMaxStatus() {
+        return MAX_STATUS;
+    }
+}
@@ -0,0 +1,59 @@
+package com.webrtc.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One signaling frame relayed between WebSocket sessions, begun when the frame is received.
+ */
+@Name("com.webrtc.backend.SignalingRelay")
+@Label("Signaling Relay")
+@Category({"WebRTC Backend", "WebSocket"})
+@Description("A signaling frame read from one user's socket and queued for another's; the duration runs from receipt to the hand-off")
+@StackTrace(false)
+class SignalingRelayEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(SignalingRelayEvent.class);
+
+    @Label("Sender")
+    int senderId;
+
+    @Label("Receiver")
+    int receiverId;
+
+    @Label("Payload Size")
+    @Description("Length of the frame in characters")
+    int payloadSize;
+
+    @Label("Relayed")
+    @Description("False if the receiver was not connected or its outbound queue rejected the frame")
+    boolean relayed;
+
+    /**
+     * @return a started event, or null if no recording has the event enabled
+     */
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SignalingRelayEvent event = new SignalingRelayEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object started, int senderId, int receiverId, int payloadSize, boolean relayed) {
+        SignalingRelayEvent event = (SignalingRelayEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.senderId = senderId;
+            event.receiverId = receiverId;
+            event.payloadSize = payloadSize;
+            event.relayed = relayed;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.webrtc.backend.model;
+
+/**
+ * Body of the call control requests: {@code {"from": 1, "to": 2}}. Ids sent as numeric
+ * strings are accepted too.
+ */
+public class CallPartiesRequest {
+    private Integer from;
+    private Integer to;
+
+    public Integer getFrom() {
+        return from;
+    }
+
+    public void setFrom(Integer from) {
+        this.from = from;
+    }
+
+    public Integer getTo() {
+        return to;
+    }
+
+    public void setTo(Integer to) {
+        this.to = to;
+    }
+}
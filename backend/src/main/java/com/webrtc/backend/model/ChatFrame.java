@@ -0,0 +1,47 @@
+package com.webrtc.backend.model;
+
+import java.util.List;
+
+/**
+ * A frame received on the chat WebSocket: either a chat message
+ * ({@code {"receiverId": 2, "content": "..."}}) or a control message such as
+ * {@code {"type": "presence-subscribe", "userIds": [...]}}.
+ */
+public class ChatFrame {
+    private String type;
+    private List<Integer> userIds;
+    private int receiverId;
+    private String content;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<Integer> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Integer> userIds) {
+        this.userIds = userIds;
+    }
+
+    public int getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(int receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
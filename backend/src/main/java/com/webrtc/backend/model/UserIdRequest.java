@@ -0,0 +1,16 @@
+package com.webrtc.backend.model;
+
+/**
+ * Body of the requests that only name the calling user: {@code {"userId": 1}}.
+ */
+public class UserIdRequest {
+    private Integer userId;
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,241 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.webrtc.backend.dao.ChatDao;
+import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.util.AsyncLog;
+
+/**
+ * Group-commit pipeline for chat messages.
+ *
+ * Messages from all sessions are queued and written by one thread with multi-row INSERTs.
+ * A batch is flushed when it is full or when its oldest message has waited the configured
+ * delay, whichever comes first. Ids are assigned from an in-process sequence seeded with
+ * MAX(id) as a message is queued, under the same lock, so messages are committed in id order
+ * and a reader never sees an id committed before a lower one. The message can be relayed once
+ * queued; the returned future completes once it is durable. If a batch fails, its messages are
+ * retried one by one so only the bad ones fail. This assumes a single backend node writes
+ * chat_messages.
+ *
+ * Read markers and reloads of {@link UnreadCounters} go through the same queue, so inserts,
+ * reads and the counters' starting point are applied to the database and to memory in one order.
+ */
+public class ChatMessageWriter {
+
+    private static final int BATCH_SIZE = Integer.getInteger("webrtc.chat.batchSize", 100);
+    private static final long BATCH_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("webrtc.chat.batchDelayMillis", 5L));
+    private static final int QUEUE_CAPACITY = Integer.getInteger("webrtc.chat.queueCapacity", 10_000);
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("chat");
+    private static final ChatMessageWriter INSTANCE = new ChatMessageWriter();
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final ChatDao chatDao = new ChatDao();
+    private final UnreadCounters unreadCounters = UnreadCounters.getInstance();
+    private final Thread writerThread;
+    private final Object submitLock = new Object();
+    // Guarded by submitLock; 0 until seeded from the database
+    private int nextId;
+    private volatile boolean running = true;
+
+    private ChatMessageWriter() {
+        writerThread = new Thread(this::writeLoop, "chat-group-commit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public static ChatMessageWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gives the message its id and creation time and queues it for the next batch.
+     * Blocks if the queue is full, which pushes back on senders when the database falls behind.
+     * @return a future completed with the message once it has been committed
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message) throws SQLException {
+        Pending pending = new Pending(Kind.MESSAGE, message, 0, 0, 0);
+        // Numbering and queueing together keeps the queue, and so the commits, in id order
+        synchronized (submitLock) {
+            if (nextId == 0) {
+                nextId = chatDao.getMaxMessageId();
+            }
+            message.setId(++nextId);
+            message.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+            return enqueue(pending);
+        }
+    }
+
+    /**
+     * Queues marking the messages from the sender to the receiver up to {@code upToId} as read,
+     * behind any messages already queued.
+     * @return a future completed once the read watermark and the unread count have been updated
+     */
+    public CompletableFuture<Void> markReadUpTo(int senderId, int receiverId, int upToId) {
+        return enqueue(new Pending(Kind.READ_MARKER, null, senderId, receiverId, upToId)).thenAccept(m -> { });
+    }
+
+    /**
+     * Queues loading {@link UnreadCounters} from chat_unread_counts, behind anything already queued,
+     * so no committed batch is counted twice or missed.
+     * @return a future completed once the counts are loaded, or exceptionally if they could not be read
+     */
+    public CompletableFuture<Void> loadUnreadCounts() {
+        return enqueue(new Pending(Kind.LOAD_UNREAD_COUNTS, null, 0, 0, 0)).thenAccept(m -> { });
+    }
+
+    private CompletableFuture<ChatMessage> enqueue(Pending pending) {
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + BATCH_DELAY_NANOS;
+                while (batch.size() < BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    // Take what is already queued without waiting, then wait out the deadline
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not expected; stop once the queue is empty
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        // Messages are inserted together; anything else splits the batch to keep the order
+        List<Pending> run = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (pending.kind == Kind.MESSAGE) {
+                run.add(pending);
+                continue;
+            }
+            save(run);
+            run.clear();
+            if (pending.kind == Kind.READ_MARKER) {
+                markRead(pending);
+            } else {
+                loadUnreadCounts(pending);
+            }
+        }
+        save(run);
+    }
+
+    private void save(List<Pending> run) {
+        if (run.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> messages = new ArrayList<>(run.size());
+        for (Pending pending : run) {
+            messages.add(pending.message);
+        }
+        try {
+            unreadCounters.add(chatDao.saveMessages(messages));
+            for (Pending pending : run) {
+                pending.future.complete(pending.message);
+            }
+        } catch (SQLException e) {
+            if (run.size() == 1) {
+                LOG.error("save_failed", e, "messageId", run.get(0).message.getId());
+                run.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // One bad row rolls back the whole INSERT; save the rest without it
+            LOG.warn("batch_save_failed", "messages", run.size(), "error", e.getMessage());
+            for (Pending pending : run) {
+                save(Collections.singletonList(pending));
+            }
+        }
+    }
+
+    private void markRead(Pending pending) {
+        try {
+            int read = chatDao.markReadUpTo(pending.senderId, pending.receiverId, pending.upToId);
+            unreadCounters.subtract(pending.senderId, pending.receiverId, read);
+            pending.future.complete(null);
+        } catch (SQLException e) {
+            LOG.error("mark_read_failed", e, "senderId", pending.senderId, "receiverId", pending.receiverId);
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private void loadUnreadCounts(Pending pending) {
+        try {
+            unreadCounters.loadFromDatabase();
+            pending.future.complete(null);
+        } catch (SQLException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting work after writing everything already queued.
+     */
+    public void shutdown() {
+        // No interrupt: it would fail the connection borrow of whatever is being written, and
+        // every one after it. The loop notices within one poll timeout once the queue is empty.
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Kind {
+        MESSAGE, READ_MARKER, LOAD_UNREAD_COUNTS
+    }
+
+    private static final class Pending {
+        final Kind kind;
+        // Only set for a message
+        final ChatMessage message;
+        final int senderId;
+        final int receiverId;
+        final int upToId;
+        final CompletableFuture<ChatMessage> future = new CompletableFuture<>();
+
+        Pending(Kind kind, ChatMessage message, int senderId, int receiverId, int upToId) {
+            this.kind = kind;
+            this.message = message;
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.upToId = upToId;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.webrtc.backend.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.JsonCodec;
+import com.webrtc.backend.websocket.ChatWebSocket;
+
+/**
+ * Pushes presence joins and leaves to chat WebSocket clients instead of having them poll.
+ *
+ * Each subscriber declares the users it cares about (its interest set). Changes are
+ * coalesced and fanned out once per tick, so a burst of logins produces at most one
+ * {@code {"type": "presence", "joined": [...], "left": [...]}} frame per subscriber per tick,
+ * and only subscribers interested in a user ever hear about it.
+ *
+ * All frames, including the initial one a new subscriber gets, are built and queued on the
+ * tick thread, so a subscriber never receives a snapshot that is older than a change it was
+ * already sent.
+ */
+public class PresenceBroadcaster implements PresenceTracker.Listener {
+
+    private static final long TICK_MILLIS = Long.getLong("webrtc.presence.pushIntervalMillis", 250L);
+    private static final int MAX_INTEREST_SET_SIZE = Integer.getInteger("webrtc.presence.maxInterestSetSize", 1000);
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("presence");
+    private static final PresenceBroadcaster INSTANCE = new PresenceBroadcaster();
+
+    // Watched user -> subscribers watching them
+    private final Map<Integer, Set<Integer>> watchers = new ConcurrentHashMap<>();
+    // Subscriber -> users they watch, to undo the index on unsubscribe
+    private final Map<Integer, Set<Integer>> interests = new ConcurrentHashMap<>();
+    // Latest unsent change per user; a join followed by a leave within a tick sends only the leave
+    private final Map<Integer, Change> pending = new ConcurrentHashMap<>();
+    // Subscribers waiting for their initial frame
+    private final Set<Integer> pendingInitial = ConcurrentHashMap.newKeySet();
+
+    private final PresenceTracker presenceTracker = PresenceTracker.getInstance();
+    private final ObjectMapper objectMapper = JsonCodec.mapper();
+    private final ScheduledExecutorService ticker;
+
+    private PresenceBroadcaster() {
+        presenceTracker.addListener(this);
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence-broadcaster");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static PresenceBroadcaster getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replaces a subscriber's interest set and sends which of those users are online on the next
+     * tick, which is run right away. An empty collection unsubscribes.
+     */
+    public void subscribe(int subscriberId, Collection<Integer> userIds) {
+        Set<Integer> interest = new HashSet<>();
+        for (Integer userId : userIds) {
+            if (interest.size() >= MAX_INTEREST_SET_SIZE) {
+                break;
+            }
+            interest.add(userId);
+        }
+
+        synchronized (this) {
+            removeFromIndex(subscriberId);
+            if (interest.isEmpty()) {
+                return;
+            }
+            interests.put(subscriberId, interest);
+            for (Integer userId : interest) {
+                watchers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriberId);
+            }
+        }
+
+        pendingInitial.add(subscriberId);
+        try {
+            ticker.execute(this::tick);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nothing more is sent
+        }
+    }
+
+    public synchronized void unsubscribe(int subscriberId) {
+        removeFromIndex(subscriberId);
+    }
+
+    private void removeFromIndex(int subscriberId) {
+        Set<Integer> previous = interests.remove(subscriberId);
+        if (previous == null) {
+            return;
+        }
+        for (Integer userId : previous) {
+            watchers.computeIfPresent(userId, (id, set) -> {
+                set.remove(subscriberId);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    @Override
+    public void onPresenceChange(int userId, String username, boolean online) {
+        // Nobody is watching: nothing to coalesce or send
+        if (watchers.containsKey(userId)) {
+            pending.put(userId, new Change(username, online));
+        }
+    }
+
+    private void tick() {
+        try {
+            if (pending.isEmpty() && pendingInitial.isEmpty()) {
+                return;
+            }
+            Set<Integer> initial = new HashSet<>();
+            for (Integer subscriberId : pendingInitial) {
+                if (pendingInitial.remove(subscriberId)) {
+                    initial.add(subscriberId);
+                }
+            }
+
+            Map<Integer, Frame> frames = new HashMap<>();
+            for (Integer userId : pending.keySet()) {
+                Change change = pending.remove(userId);
+                Set<Integer> subscribers = watchers.getOrDefault(userId, Collections.<Integer>emptySet());
+                for (Integer subscriberId : subscribers) {
+                    if (initial.contains(subscriberId)) {
+                        continue; // Covered by the initial frame, which is read after this change
+                    }
+                    Frame frame = frames.computeIfAbsent(subscriberId, id -> new Frame());
+                    if (change.online) {
+                        frame.joined.put(userId, change.username);
+                    } else {
+                        frame.left.add(userId);
+                    }
+                }
+            }
+            for (Integer subscriberId : initial) {
+                sendInitial(subscriberId);
+            }
+            for (Map.Entry<Integer, Frame> entry : frames.entrySet()) {
+                send(entry.getKey(), entry.getValue(), false);
+            }
+        } catch (Exception e) {
+            // A throwing task would be silently cancelled by the scheduler
+            LOG.error("push_failed", e);
+        }
+    }
+
+    /**
+     * Sends which of the subscriber's watched users are online now. A change made after this
+     * read is still pending and goes out with a later tick.
+     */
+    private void sendInitial(int subscriberId) {
+        Set<Integer> interest = interests.get(subscriberId);
+        if (interest == null) {
+            return; // Unsubscribed meanwhile
+        }
+        Frame frame = new Frame();
+        for (Integer userId : interest) {
+            String username = presenceTracker.getUsername(userId);
+            if (username != null) {
+                frame.joined.put(userId, username);
+            }
+        }
+        send(subscriberId, frame, true);
+    }
+
+    private void send(int subscriberId, Frame frame, boolean initial) {
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("type", "presence");
+        if (initial) {
+            json.put("initial", true);
+        }
+        ArrayNode joined = json.putArray("joined");
+        for (Map.Entry<Integer, String> user : frame.joined.entrySet()) {
+            ObjectNode userNode = joined.addObject();
+            userNode.put("userId", user.getKey());
+            userNode.put("username", user.getValue());
+        }
+        ArrayNode left = json.putArray("left");
+        for (Integer userId : frame.left) {
+            left.add(userId);
+        }
+        try {
+            ChatWebSocket.notifyUser(subscriberId, objectMapper.writeValueAsString(json));
+        } catch (JsonProcessingException e) {
+            LOG.error("serialize_failed", e, "subscriberId", subscriberId);
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private static final class Change {
+        final String username;
+        final boolean online;
+
+        Change(String username, boolean online) {
+            this.username = username;
+            this.online = online;
+        }
+    }
+
+    private static final class Frame {
+        final Map<Integer, String> joined = new HashMap<>();
+        final Set<Integer> left = new HashSet<>();
+    }
+}
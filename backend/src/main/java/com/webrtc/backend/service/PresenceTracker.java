@@ -0,0 +1,368 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webrtc.backend.dao.UserDao;
+import com.webrtc.backend.model.User;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.HashedTimingWheel;
+import com.webrtc.backend.util.JsonCodec;
+
+/**
+ * In-memory presence table.
+ *
+ * Heartbeats only update a last-seen timestamp in memory. Online/offline transitions are
+ * queued and written to the users table in batches by {@link #flush()}, so the database
+ * sees one write per transition instead of one per heartbeat.
+ *
+ * Timeouts are tracked in a {@link HashedTimingWheel}: a heartbeat just moves the user's
+ * deadline, and {@link #expireDue()} finds the users whose deadline passed without scanning
+ * everyone.
+ *
+ * Every join and leave bumps a version number. The serialized online list is cached per
+ * version, and a bounded change log lets clients fetch only what changed since a version.
+ */
+public class PresenceTracker {
+
+    private static final long TIMEOUT_MILLIS = Long.getLong("webrtc.presence.timeoutSeconds", 90L) * 1000;
+    private static final long TICK_MILLIS = Long.getLong("webrtc.presence.tickMillis", 1000L);
+    private static final int CHANGE_LOG_SIZE = Integer.getInteger("webrtc.presence.changeLogSize", 1024);
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("presence");
+    private static final PresenceTracker INSTANCE = new PresenceTracker();
+
+    private final Map<Integer, Presence> presence = new ConcurrentHashMap<>();
+    // Latest unflushed state per user; later transitions overwrite earlier ones
+    private final Map<Integer, Boolean> pendingTransitions = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<Presence> timeouts =
+            new HashedTimingWheel<>(TICK_MILLIS, TIMEOUT_MILLIS, p -> p.lastSeen + TIMEOUT_MILLIS);
+    private final UserDao userDao = new UserDao();
+    private final ObjectMapper objectMapper = JsonCodec.mapper();
+
+    // Versions start at a random point below 2^52 (exact in JavaScript), so a version held from
+    // before a restart almost never falls inside this process's change log; ETags also carry a
+    // random epoch, so one issued by another process never matches
+    private final Change[] changeLog = new Change[CHANGE_LOG_SIZE];
+    private final long changeLogBase = ThreadLocalRandom.current().nextLong(1L << 52);
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private volatile long version = changeLogBase;
+    private volatile Snapshot snapshot;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private PresenceTracker() {
+    }
+
+    public static PresenceTracker getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Seeds the table with the users the database currently considers online.
+     * They expire normally unless they keep sending heartbeats.
+     */
+    public void loadFromDatabase() throws SQLException {
+        long now = System.currentTimeMillis();
+        for (User user : userDao.getOnlineUsers()) {
+            Presence p = new Presence(user.getId(), user.getUsername(), now);
+            if (presence.putIfAbsent(user.getId(), p) == null) {
+                timeouts.schedule(p);
+            }
+        }
+    }
+
+    /**
+     * Records a heartbeat. Only the first heartbeat after being offline costs anything more
+     * than a timestamp write.
+     * @return false if the user does not exist
+     */
+    public boolean heartbeat(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        Presence p = presence.get(userId);
+        if (p != null) {
+            p.lastSeen = now;
+            // Lost a race with expiry: fall through and come back online
+            if (!p.expired) {
+                return true;
+            }
+        }
+
+        String username;
+        if (p != null) {
+            username = p.username;
+        } else {
+            User user = userDao.getUserById(userId);
+            if (user == null) {
+                return false;
+            }
+            username = user.getUsername();
+        }
+        Presence fresh = new Presence(userId, username, now);
+        Presence existing = presence.putIfAbsent(userId, fresh);
+        if (existing != null && existing.expired && presence.replace(userId, existing, fresh)) {
+            existing = null;
+        }
+        if (existing == null) {
+            timeouts.schedule(fresh);
+            pendingTransitions.put(userId, Boolean.TRUE);
+            recordChange(userId, username, true);
+        } else {
+            existing.lastSeen = now;
+        }
+        return true;
+    }
+
+    /**
+     * Marks a user offline immediately, e.g. on logout.
+     */
+    public void markOffline(int userId) {
+        Presence p = presence.remove(userId);
+        if (p != null) {
+            // The wheel still holds it and drops it on its next visit
+            p.expired = true;
+            pendingTransitions.put(userId, Boolean.FALSE);
+            recordChange(userId, p.username, false);
+        } else {
+            // Not tracked in memory, but the database may still say online
+            pendingTransitions.putIfAbsent(userId, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Advances the timing wheel and marks users whose deadline passed as offline.
+     * Called once per tick; the resulting transitions go out with the next flush.
+     * @return the number of users that went offline
+     */
+    public int expireDue() {
+        int expired = 0;
+        for (Presence p : timeouts.advance(System.currentTimeMillis())) {
+            if (p.expired) {
+                continue; // Already logged out
+            }
+            p.expired = true;
+            // remove(key, value) so a user who already came back with a new entry stays online
+            if (presence.remove(p.userId, p)) {
+                pendingTransitions.put(p.userId, Boolean.FALSE);
+                recordChange(p.userId, p.username, false);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public static long getTickMillis() {
+        return TICK_MILLIS;
+    }
+
+    public boolean isOnline(int userId) {
+        return presence.containsKey(userId);
+    }
+
+    /**
+     * @return the username of an online user, or null if the user is offline
+     */
+    public String getUsername(int userId) {
+        Presence p = presence.get(userId);
+        return p != null ? p.username : null;
+    }
+
+    /**
+     * @return the online users with id and username set
+     */
+    public List<User> getOnlineUsers() {
+        List<User> users = new ArrayList<>(presence.size());
+        for (Presence p : presence.values()) {
+            User user = new User();
+            user.setId(p.userId);
+            user.setUsername(p.username);
+            users.add(user);
+        }
+        return users;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the serialized online list for the current version, rebuilt only if presence changed
+     */
+    public Snapshot getSnapshot() throws JsonProcessingException {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot != null && snapshot.version == version) {
+                return snapshot;
+            }
+            // Built under the lock so the list matches the version exactly
+            ArrayNode usersArray = objectMapper.createArrayNode();
+            for (Presence p : presence.values()) {
+                usersArray.add(userNode(p.userId, p.username));
+            }
+            snapshot = new Snapshot(version, "\"" + epoch + "-" + version + "\"", objectMapper.writeValueAsBytes(usersArray));
+            return snapshot;
+        }
+    }
+
+    /**
+     * Serializes the joins and leaves after {@code sinceVersion}, coalesced per user.
+     * @return the JSON delta, or null if the change log no longer reaches back that far
+     */
+    public synchronized byte[] getChangesSince(long sinceVersion) throws JsonProcessingException {
+        long oldest = version - Math.min(version - changeLogBase, CHANGE_LOG_SIZE);
+        if (sinceVersion < oldest || sinceVersion > version) {
+            return null;
+        }
+        Map<Integer, Change> latest = new LinkedHashMap<>();
+        for (long v = sinceVersion + 1; v <= version; v++) {
+            Change change = changeLog[(int) (v % CHANGE_LOG_SIZE)];
+            latest.put(change.userId, change);
+        }
+
+        ObjectNode delta = objectMapper.createObjectNode();
+        delta.put("version", version);
+        ArrayNode joined = delta.putArray("joined");
+        ArrayNode left = delta.putArray("left");
+        for (Change change : latest.values()) {
+            if (change.online) {
+                joined.add(userNode(change.userId, change.username));
+            } else {
+                left.add(change.userId);
+            }
+        }
+        return objectMapper.writeValueAsBytes(delta);
+    }
+
+    private void recordChange(int userId, String username, boolean online) {
+        synchronized (this) {
+            version++;
+            changeLog[(int) (version % CHANGE_LOG_SIZE)] = new Change(userId, username, online);
+        }
+        for (Listener listener : listeners) {
+            listener.onPresenceChange(userId, username, online);
+        }
+    }
+
+    private ObjectNode userNode(int userId, String username) {
+        ObjectNode userNode = objectMapper.createObjectNode();
+        userNode.put("userId", userId);
+        userNode.put("username", username);
+        return userNode;
+    }
+
+    /**
+     * Writes all queued transitions in at most two UPDATE statements.
+     * Failed transitions are re-queued unless a newer one was recorded meanwhile.
+     * @return the number of transitions taken off the queue
+     */
+    public int flush() {
+        if (pendingTransitions.isEmpty()) {
+            return 0;
+        }
+        List<Integer> wentOnline = new ArrayList<>();
+        List<Integer> wentOffline = new ArrayList<>();
+        for (Integer userId : pendingTransitions.keySet()) {
+            Boolean online = pendingTransitions.remove(userId);
+            if (online == null) {
+                continue;
+            }
+            (online ? wentOnline : wentOffline).add(userId);
+        }
+
+        write(wentOnline, true);
+        write(wentOffline, false);
+        return wentOnline.size() + wentOffline.size();
+    }
+
+    private void write(List<Integer> userIds, boolean online) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        try {
+            userDao.updateOnlineStatus(userIds, online);
+        } catch (SQLException e) {
+            LOG.warn("flush_failed", "changes", userIds.size(), "online", online, "error", e.getMessage());
+            for (Integer userId : userIds) {
+                pendingTransitions.putIfAbsent(userId, online);
+            }
+        }
+    }
+
+    /**
+     * Notified of every join and leave on the thread that caused it. Implementations must not block.
+     */
+    public interface Listener {
+        void onPresenceChange(int userId, String username, boolean online);
+    }
+
+    /**
+     * The online list serialized as JSON, tagged with the presence version it reflects.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final String etag;
+        private final byte[] json;
+
+        Snapshot(long version, String etag, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.json = json;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the quoted ETag, the version prefixed with this process's epoch
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+
+    private static final class Change {
+        final int userId;
+        final String username;
+        final boolean online;
+
+        Change(int userId, String username, boolean online) {
+            this.userId = userId;
+            this.username = username;
+            this.online = online;
+        }
+    }
+
+    private static final class Presence {
+        final int userId;
+        final String username;
+        volatile long lastSeen;
+        volatile boolean expired;
+
+        Presence(int userId, String username, long lastSeen) {
+            this.userId = userId;
+            this.username = username;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.webrtc.backend.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.webrtc.backend.dao.ChatDao;
+import com.webrtc.backend.util.AsyncLog;
+
+/**
+ * Read state as a per-conversation watermark: everything a receiver got from a sender up to
+ * the last message id they have seen counts as read.
+ *
+ * Reading a conversation only moves the watermark in memory. Watermarks are coalesced per
+ * (receiver, sender), so several reads within one interval produce a single write, and are
+ * handed to {@link ChatMessageWriter} on a timer. Reads of a conversation with nothing
+ * unread write nothing at all.
+ */
+public class ReadReceipts {
+
+    private static final long FLUSH_INTERVAL_MILLIS = Long.getLong("webrtc.chat.readReceipts.flushIntervalMillis", 500L);
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("chat");
+    private static final ReadReceipts INSTANCE = new ReadReceipts();
+
+    // ChatDao.pairKey(receiver, sender) -> highest message id read, not yet written
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final UnreadCounters unreadCounters = UnreadCounters.getInstance();
+    private final RecentMessageCache recentMessageCache = RecentMessageCache.getInstance();
+    private final ChatMessageWriter chatMessageWriter = ChatMessageWriter.getInstance();
+    private final ScheduledExecutorService flusher;
+
+    private ReadReceipts() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "read-receipts");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static ReadReceipts getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records that the receiver has seen the sender's messages up to {@code lastSeenId}.
+     */
+    public void markRead(int receiverId, int senderId, int lastSeenId) {
+        if (unreadCounters.isLoaded() && unreadCounters.getCount(receiverId, senderId) == 0) {
+            return; // Nothing unread, nothing to write
+        }
+        pending.merge(ChatDao.pairKey(receiverId, senderId), lastSeenId, Math::max);
+        // Cached copies show the new state right away
+        recentMessageCache.markReadUpTo(senderId, receiverId, lastSeenId);
+    }
+
+    /**
+     * Records that the sender's message {@code messageId} reached the receiver's open connection,
+     * which counts as reading it. Unlike {@link #markRead} this does not consult the unread
+     * counter, which may not include the message yet.
+     */
+    public void markDelivered(int receiverId, int senderId, int messageId) {
+        pending.merge(ChatDao.pairKey(receiverId, senderId), messageId, Math::max);
+        recentMessageCache.markReadUpTo(senderId, receiverId, messageId);
+    }
+
+    private void flush() {
+        try {
+            for (Long key : pending.keySet()) {
+                Integer upToId = pending.remove(key);
+                if (upToId == null) {
+                    continue;
+                }
+                int receiverId = (int) (key >>> 32);
+                int senderId = (int) key.longValue();
+                chatMessageWriter.markReadUpTo(senderId, receiverId, upToId);
+            }
+        } catch (Exception e) {
+            // A throwing task would be silently cancelled by the scheduler
+            LOG.error("read_receipt_flush_failed", e);
+        }
+    }
+
+    /**
+     * Hands the remaining watermarks to the chat writer. Call before shutting the writer down.
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+}
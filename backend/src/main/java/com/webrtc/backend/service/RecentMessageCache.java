@@ -0,0 +1,324 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.webrtc.backend.dao.ChatDao;
+import com.webrtc.backend.model.ChatMessage;
+
+/**
+ * The last messages of recently used conversations, so opening a chat does not query MySQL.
+ *
+ * Each conversation keeps its newest {@code messagesPerConversation} messages in a ring
+ * buffer ordered by id. A conversation is loaded from the database on its first read and
+ * then kept current by the chat write path, which adds each message once it is committed.
+ * When the estimated size of all cached conversations exceeds {@code maxBytes}, the least
+ * recently used ones are dropped. Each conversation counts a fixed cost for its ring on top of
+ * its messages, and one found empty is not kept, so lookups of arbitrary user pairs cannot grow
+ * the cache past its budget.
+ */
+public class RecentMessageCache {
+
+    private static final int MESSAGES_PER_CONVERSATION = Integer.getInteger("webrtc.chat.cache.messagesPerConversation", 50);
+    private static final long MAX_BYTES = Long.getLong("webrtc.chat.cache.maxBytes", 32L * 1024 * 1024);
+
+    // Rough heap cost of a cached ChatMessage apart from its text
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+    // Rough heap cost of a Conversation with its map entry and ring, whether or not it holds messages
+    private static final long CONVERSATION_OVERHEAD_BYTES = 128 + 4L * MESSAGES_PER_CONVERSATION;
+
+    private static final RecentMessageCache INSTANCE = new RecentMessageCache();
+
+    // Access-ordered, so iteration starts at the least recently used conversation
+    private final LinkedHashMap<Long, Conversation> conversations = new LinkedHashMap<>(256, 0.75f, true);
+    private final ChatDao chatDao = new ChatDao();
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private RecentMessageCache() {
+    }
+
+    public static RecentMessageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the latest {@code limit} messages of the conversation, oldest first
+     */
+    public List<ChatMessage> getLatest(int userId1, int userId2, int limit) throws SQLException {
+        long key = conversationKey(userId1, userId2);
+        Conversation conversation;
+        synchronized (this) {
+            conversation = conversations.get(key);
+        }
+        if (conversation != null) {
+            List<ChatMessage> latest = conversation.latest(limit);
+            if (latest != null) {
+                hits.incrementAndGet();
+                return latest;
+            }
+        }
+        misses.incrementAndGet();
+        if (limit > MESSAGES_PER_CONVERSATION) {
+            return chatDao.getMessagesBefore(userId1, userId2, Integer.MAX_VALUE, limit);
+        }
+
+        // Register the conversation before reading, so a message committed after the read
+        // still reaches it through add()
+        synchronized (this) {
+            conversation = conversations.get(key);
+            if (conversation == null) {
+                conversation = new Conversation(Math.min(userId1, userId2));
+                conversations.put(key, conversation);
+                bytes += CONVERSATION_OVERHEAD_BYTES;
+                evictOverBudget();
+            }
+        }
+        List<ChatMessage> rows = chatDao.getMessagesBefore(userId1, userId2, Integer.MAX_VALUE, MESSAGES_PER_CONVERSATION);
+        adjustBytes(conversation, conversation.load(rows, rows.size() < MESSAGES_PER_CONVERSATION));
+        if (rows.isEmpty()) {
+            removeIfEmpty(key, conversation);
+        }
+        List<ChatMessage> latest = conversation.latest(limit);
+        return latest != null ? latest : rows.subList(Math.max(0, rows.size() - limit), rows.size());
+    }
+
+    /**
+     * Adds a committed message to its conversation, if that conversation is cached.
+     */
+    public void add(ChatMessage message) {
+        Conversation conversation;
+        synchronized (this) {
+            conversation = conversations.get(conversationKey(message.getSenderId(), message.getReceiverId()));
+        }
+        if (conversation != null) {
+            adjustBytes(conversation, conversation.add(message));
+        }
+    }
+
+    /**
+     * Mirrors {@link ChatDao#markReadUpTo(int, int, int)} on the cached copies.
+     */
+    public void markReadUpTo(int senderId, int receiverId, int upToId) {
+        Conversation conversation;
+        synchronized (this) {
+            conversation = conversations.get(conversationKey(senderId, receiverId));
+        }
+        if (conversation != null) {
+            conversation.markReadUpTo(receiverId, upToId);
+        }
+    }
+
+    private void adjustBytes(Conversation conversation, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (conversation.evicted) {
+                return; // Its bytes were already taken off when it was dropped
+            }
+            bytes += delta;
+            evictOverBudget();
+        }
+    }
+
+    // Called with the cache lock held
+    private void evictOverBudget() {
+        Iterator<Conversation> it = conversations.values().iterator();
+        while (bytes > MAX_BYTES && it.hasNext()) {
+            Conversation coldest = it.next();
+            it.remove();
+            coldest.evicted = true;
+            bytes -= CONVERSATION_OVERHEAD_BYTES + coldest.bytes();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops a conversation whose load found no messages, unless one has arrived since.
+     * An empty conversation is served as a miss next time, which costs the same query.
+     */
+    private synchronized void removeIfEmpty(long key, Conversation conversation) {
+        if (conversations.get(key) == conversation && conversation.isEmpty()) {
+            conversations.remove(key);
+            conversation.evicted = true;
+            bytes -= CONVERSATION_OVERHEAD_BYTES;
+        }
+    }
+
+    private static long conversationKey(int userId1, int userId2) {
+        int low = Math.min(userId1, userId2);
+        int high = Math.max(userId1, userId2);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    private static long sizeOf(ChatMessage message) {
+        String content = message.getContent();
+        return MESSAGE_OVERHEAD_BYTES + (content != null ? 2L * content.length() : 0);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getConversationCount() {
+        return conversations.size();
+    }
+
+    /**
+     * Ring buffer of a conversation's newest messages, oldest at {@code head}, and the read
+     * watermark of each side, applied to every message as it comes in.
+     */
+    private static final class Conversation {
+        private final ChatMessage[] ring = new ChatMessage[MESSAGES_PER_CONVERSATION];
+        // The lower of the two user ids; the watermarks are kept per receiver
+        private final int lowUserId;
+        private int readByLowUser;
+        private int readByHighUser;
+        private int head;
+        private int size;
+        private long bytes;
+        private boolean loaded;
+        // Set under the cache lock once dropped
+        private boolean evicted;
+        // True when the ring holds the whole history, not just its newest part
+        private boolean complete;
+
+        Conversation(int lowUserId) {
+            this.lowUserId = lowUserId;
+        }
+
+        /**
+         * @return the newest {@code limit} messages, or null if they are not all in the ring
+         */
+        synchronized List<ChatMessage> latest(int limit) {
+            if (!loaded || (limit > size && !complete)) {
+                return null;
+            }
+            int count = Math.min(limit, size);
+            List<ChatMessage> latest = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                latest.add(get(i));
+            }
+            return latest;
+        }
+
+        /**
+         * Merges the rows read from the database with anything added meanwhile.
+         * @return the change in estimated bytes
+         */
+        synchronized long load(List<ChatMessage> rows, boolean wholeHistory) {
+            long before = bytes;
+            for (ChatMessage row : rows) {
+                insert(row);
+            }
+            loaded = true;
+            complete = wholeHistory && size < ring.length;
+            return bytes - before;
+        }
+
+        synchronized long add(ChatMessage message) {
+            long before = bytes;
+            insert(message);
+            return bytes - before;
+        }
+
+        synchronized void markReadUpTo(int receiverId, int upToId) {
+            if (receiverId == lowUserId) {
+                readByLowUser = Math.max(readByLowUser, upToId);
+            } else {
+                readByHighUser = Math.max(readByHighUser, upToId);
+            }
+            for (int i = 0; i < size; i++) {
+                applyWatermark(get(i));
+            }
+        }
+
+        private void applyWatermark(ChatMessage message) {
+            int readUpTo = message.getReceiverId() == lowUserId ? readByLowUser : readByHighUser;
+            if (message.getId() <= readUpTo) {
+                message.setRead(true);
+            }
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        private ChatMessage get(int index) {
+            return ring[(head + index) % ring.length];
+        }
+
+        private void set(int index, ChatMessage message) {
+            ring[(head + index) % ring.length] = message;
+        }
+
+        private void insert(ChatMessage message) {
+            // A read may have been recorded before the message, or a row loaded from before it
+            applyWatermark(message);
+            int id = message.getId();
+            // Common case: newer than everything held, append and drop the oldest if full
+            if (size == 0 || get(size - 1).getId() < id) {
+                if (size == ring.length) {
+                    bytes -= sizeOf(ring[head]);
+                    complete = false;
+                    ring[head] = message;
+                    head = (head + 1) % ring.length;
+                } else {
+                    set(size++, message);
+                }
+                bytes += sizeOf(message);
+                return;
+            }
+
+            // Out of order, only while loading: find the slot, skipping ids already held
+            int position = size;
+            while (position > 0 && get(position - 1).getId() > id) {
+                position--;
+            }
+            if (position > 0 && get(position - 1).getId() == id) {
+                return;
+            }
+            if (size == ring.length) {
+                if (position == 0) {
+                    return; // Older than everything in a full ring
+                }
+                // Drop the oldest to make room
+                bytes -= sizeOf(ring[head]);
+                complete = false;
+                head = (head + 1) % ring.length;
+                size--;
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, message);
+            size++;
+            bytes += sizeOf(message);
+        }
+    }
+}
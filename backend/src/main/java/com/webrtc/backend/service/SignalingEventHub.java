@@ -0,0 +1,261 @@
+package com.webrtc.backend.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.JsonCodec;
+
+/**
+ * Per-user stream of signaling events (offer, answer, candidate, reject, hangup).
+ *
+ * Each user has a bounded replay buffer of recent events so a subscriber that reconnects
+ * with the last event id it saw gets everything it missed. Buffers of users with no
+ * subscriber are dropped once their newest event is older than the replay window.
+ *
+ * A reconnect is only reported complete when the id provably belongs to this process and
+ * nothing after it was dropped: ids start at a random base, and the newest id of every
+ * dropped buffer raises a hub-wide floor that a user's next buffer starts from.
+ */
+public class SignalingEventHub implements SignalingMailbox.Listener {
+
+    private static final int REPLAY_BUFFER_SIZE = Integer.getInteger("webrtc.events.replayBufferSize", 64);
+    private static final long REPLAY_WINDOW_MILLIS = Long.getLong("webrtc.events.replayWindowSeconds", 120L) * 1000;
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("signaling");
+    private static final SignalingEventHub INSTANCE = new SignalingEventHub();
+
+    private final Map<Integer, UserStream> streams = new ConcurrentHashMap<>();
+    // Ids start at a random point below 2^52 (exact in JavaScript), so an id held from before a
+    // restart almost never falls between this process's base and its latest id
+    private final long base = ThreadLocalRandom.current().nextLong(1L << 52);
+    private final AtomicLong sequence = new AtomicLong(base);
+    // Events up to this id may have been dropped along with a user's whole buffer
+    private final AtomicLong retainedFloor = new AtomicLong(base);
+    private final ObjectMapper objectMapper = JsonCodec.mapper();
+    private final ScheduledExecutorService sweeper;
+
+    private SignalingEventHub() {
+        SignalingMailbox.getInstance().addListener(this);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "signaling-event-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 15, 15, TimeUnit.SECONDS);
+    }
+
+    public static SignalingEventHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Receives events for one user. Called with the stream locked, so implementations
+     * must only queue the event and return.
+     */
+    public interface Subscriber {
+        /**
+         * @return false if the subscriber can no longer accept events and should be dropped
+         */
+        boolean offer(Event event);
+
+        /**
+         * Called periodically so idle connections can send a keep-alive.
+         */
+        void ping();
+    }
+
+    public static final class Event {
+        private final long id;
+        private final String name;
+        private final String data;
+        private final long createdAt;
+
+        Event(long id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Publishes an event to a user, buffering it for replay.
+     * @param data the JSON payload
+     */
+    public void publish(int userId, String name, String data) {
+        Event event = new Event(sequence.incrementAndGet(), name, data);
+        // compute() so a concurrent sweep cannot drop the stream between lookup and append
+        streams.compute(userId, (id, stream) -> {
+            if (stream == null) {
+                stream = new UserStream(retainedFloor.get());
+            }
+            stream.append(event);
+            return stream;
+        });
+    }
+
+    public void publish(int userId, String name, Object payload) {
+        try {
+            publish(userId, name, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            LOG.error("serialize_failed", e, "event", name, "userId", userId);
+        }
+    }
+
+    /**
+     * Registers a subscriber and replays buffered events newer than {@code lastEventId}.
+     * @param lastEventId the last id the client saw, or -1 for a fresh connection (no replay)
+     * @return false if events after {@code lastEventId} have already been evicted, or the id
+     *         was not issued by this process, so the client may have missed some and should
+     *         resynchronize its state
+     */
+    public boolean subscribe(int userId, Subscriber subscriber, long lastEventId) {
+        boolean[] complete = new boolean[1];
+        streams.compute(userId, (id, stream) -> {
+            if (stream == null) {
+                stream = new UserStream(retainedFloor.get());
+            }
+            complete[0] = stream.subscribe(subscriber, lastEventId) && lastEventId <= sequence.get();
+            return stream;
+        });
+        return complete[0];
+    }
+
+    public void unsubscribe(int userId, Subscriber subscriber) {
+        UserStream stream = streams.get(userId);
+        if (stream != null) {
+            stream.unsubscribe(subscriber);
+        }
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (UserStream stream : streams.values()) {
+            count += stream.subscriberCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void onSdp(SdpExchange sdp) {
+        publish(sdp.getReceiverId(), sdp.getType().getType(), sdp);
+    }
+
+    @Override
+    public void onCandidate(IceCandidate candidate) {
+        publish(candidate.getReceiverId(), "candidate", candidate);
+    }
+
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - REPLAY_WINDOW_MILLIS;
+        for (Integer userId : streams.keySet()) {
+            streams.computeIfPresent(userId, (id, stream) -> {
+                if (!stream.sweep(cutoff)) {
+                    return stream;
+                }
+                retainedFloor.accumulateAndGet(stream.newestId(), Math::max);
+                return null;
+            });
+        }
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private static final class UserStream {
+        private final Event[] ring = new Event[REPLAY_BUFFER_SIZE];
+        private int head; // index of the oldest event
+        private int count;
+        private long lastEvictedId;
+        private long lastEventAt = System.currentTimeMillis();
+        // Copy-on-write: a subscriber may unsubscribe itself while being offered an event
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        UserStream(long lastEvictedId) {
+            this.lastEvictedId = lastEvictedId;
+        }
+
+        synchronized void append(Event event) {
+            if (count == ring.length) {
+                lastEvictedId = ring[head].id;
+                ring[head] = event;
+                head = (head + 1) % ring.length;
+            } else {
+                ring[(head + count) % ring.length] = event;
+                count++;
+            }
+            lastEventAt = event.createdAt;
+            subscribers.removeIf(s -> !s.offer(event));
+        }
+
+        synchronized boolean subscribe(Subscriber subscriber, long lastEventId) {
+            boolean complete = true;
+            if (lastEventId >= 0) {
+                complete = lastEventId >= lastEvictedId;
+                for (int i = 0; i < count; i++) {
+                    Event event = ring[(head + i) % ring.length];
+                    if (event.id > lastEventId && !subscriber.offer(event)) {
+                        return complete;
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+            return complete;
+        }
+
+        synchronized void unsubscribe(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+        }
+
+        synchronized int subscriberCount() {
+            return subscribers.size();
+        }
+
+        synchronized long newestId() {
+            return count > 0 ? ring[(head + count - 1) % ring.length].id : lastEvictedId;
+        }
+
+        /**
+         * Pings subscribers and drops stale events.
+         * @return true if the stream is empty and unused, so it can be removed
+         */
+        synchronized boolean sweep(long cutoff) {
+            subscribers.forEach(Subscriber::ping);
+            if (subscribers.isEmpty() && lastEventAt < cutoff) {
+                return true;
+            }
+            while (count > 0 && ring[head].createdAt < cutoff) {
+                lastEvictedId = ring[head].id;
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                count--;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.webrtc.backend.dao.SignalingDao;
+import com.webrtc.backend.model.CallStatus;
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.util.AsyncLog;
+
+/**
+ * In-memory, per-receiver mailbox for SDP offers, answers and ICE candidates.
+ *
+ * Sending and consuming are pure memory operations, so polling no longer touches MySQL.
+ * Entries expire after a TTL and both the per-receiver and the total number of entries
+ * are capped. The call status kept per sender/receiver pair has its own cap, beyond which the
+ * oldest pair is forgotten. Writing them to sdp_exchange and ice_candidates is an optional write-behind
+ * ({@code -Dwebrtc.signaling.writeBehind=true}) that never blocks the caller; writes it has to
+ * drop, because its queue is full or the database refused them, are logged and counted.
+ *
+ * Registered {@link Listener}s are told about every delivery, so waiting requests can be
+ * completed as soon as something arrives instead of polling.
+ */
+public class SignalingMailbox {
+
+    private static final long TTL_MILLIS = Long.getLong("webrtc.signaling.ttlSeconds", 60L) * 1000;
+    private static final long CALL_STATUS_TTL_MILLIS = Long.getLong("webrtc.signaling.callStatusTtlSeconds", 3600L) * 1000;
+    private static final int MAX_PER_RECEIVER = Integer.getInteger("webrtc.signaling.maxPerReceiver", 16);
+    private static final int MAX_CANDIDATES_PER_RECEIVER = Integer.getInteger("webrtc.signaling.maxCandidatesPerReceiver", 64);
+    private static final int MAX_ENTRIES = Integer.getInteger("webrtc.signaling.maxEntries", 10_000);
+    private static final int MAX_CALL_STATUS = Integer.getInteger("webrtc.signaling.maxCallStatus", 10_000);
+    private static final boolean WRITE_BEHIND = Boolean.getBoolean("webrtc.signaling.writeBehind");
+    private static final int WRITE_BEHIND_QUEUE = Integer.getInteger("webrtc.signaling.writeBehindQueue", 10_000);
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("signaling");
+    private static final SignalingMailbox INSTANCE = new SignalingMailbox();
+
+    private final Map<Integer, ArrayDeque<Entry<SdpExchange>>> mailboxes = new ConcurrentHashMap<>();
+    private final Map<Integer, ArrayDeque<Entry<IceCandidate>>> candidates = new ConcurrentHashMap<>();
+    // Latest exchange per (sender, receiver) pair, without the SDP body, for call-status lookups.
+    // In insertion order, which is expiry order since a send re-inserts its pair; guarded by itself
+    private final LinkedHashMap<Long, Entry<SdpExchange>> callStatus = new LinkedHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final LongAdder droppedWrites = new LongAdder();
+
+    private final SignalingDao signalingDao = new SignalingDao();
+    private final ScheduledExecutorService sweeper;
+    private final ThreadPoolExecutor writeBehind;
+
+    private SignalingMailbox() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "signaling-mailbox-sweeper"));
+        sweeper.scheduleWithFixedDelay(this::purgeExpired, 5, 5, TimeUnit.SECONDS);
+
+        if (WRITE_BEHIND) {
+            writeBehind = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(WRITE_BEHIND_QUEUE),
+                    r -> daemon(r, "signaling-write-behind"),
+                    (task, executor) -> {
+                        droppedWrites.increment();
+                        LOG.warn("write_behind_dropped", "reason", "queue_full");
+                    });
+        } else {
+            writeBehind = null;
+        }
+    }
+
+    public static SignalingMailbox getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Delivers an offer or answer to the receiver's mailbox.
+     * @throws IllegalStateException if the mailbox is at its global capacity
+     */
+    public void send(SdpExchange sdp) {
+        long now = System.currentTimeMillis();
+        ensureCapacity();
+
+        sdp.setId(sequence.incrementAndGet());
+        sdp.setStatus(CallStatus.PENDING);
+        sdp.setCreatedAt(new Timestamp(now));
+        append(mailboxes, sdp.getReceiverId(), new Entry<>(sdp, now + TTL_MILLIS), MAX_PER_RECEIVER);
+
+        Long pair = pairKey(sdp.getSenderId(), sdp.getReceiverId());
+        Entry<SdpExchange> status = new Entry<>(withoutBody(sdp), now + CALL_STATUS_TTL_MILLIS);
+        synchronized (callStatus) {
+            callStatus.remove(pair);
+            callStatus.put(pair, status);
+            if (callStatus.size() > MAX_CALL_STATUS) {
+                Iterator<Entry<SdpExchange>> oldest = callStatus.values().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+
+        for (Listener listener : listeners) {
+            listener.onSdp(sdp);
+        }
+
+        if (writeBehind != null) {
+            writeBehind.execute(() -> {
+                try {
+                    signalingDao.saveSdp(sdp);
+                } catch (SQLException e) {
+                    droppedWrites.increment();
+                    LOG.error("write_behind_failed", e, "write", "sdp", "senderId", sdp.getSenderId(),
+                            "receiverId", sdp.getReceiverId());
+                }
+            });
+        }
+    }
+
+    /**
+     * Atomically removes and returns the latest unexpired offer or answer for a user.
+     * @return the SdpExchange if one is waiting, otherwise null
+     */
+    public SdpExchange consume(int userId) {
+        long now = System.currentTimeMillis();
+        SdpExchange[] result = new SdpExchange[1];
+        mailboxes.computeIfPresent(userId, (receiverId, box) -> {
+            Entry<SdpExchange> entry;
+            while ((entry = box.pollLast()) != null) {
+                size.decrementAndGet();
+                if (entry.expiresAt > now) {
+                    result[0] = entry.payload;
+                    break;
+                }
+            }
+            return box.isEmpty() ? null : box;
+        });
+        return result[0];
+    }
+
+    /**
+     * Delivers an ICE candidate to the receiver's mailbox.
+     * @throws IllegalStateException if the mailbox is at its global capacity
+     */
+    public void sendCandidate(IceCandidate candidate) {
+        long now = System.currentTimeMillis();
+        ensureCapacity();
+
+        candidate.setId(sequence.incrementAndGet());
+        candidate.setCreatedAt(new Timestamp(now));
+        append(candidates, candidate.getReceiverId(), new Entry<>(candidate, now + TTL_MILLIS), MAX_CANDIDATES_PER_RECEIVER);
+
+        for (Listener listener : listeners) {
+            listener.onCandidate(candidate);
+        }
+
+        if (writeBehind != null) {
+            writeBehind.execute(() -> {
+                try {
+                    signalingDao.saveIceCandidate(candidate);
+                } catch (SQLException e) {
+                    droppedWrites.increment();
+                    LOG.error("write_behind_failed", e, "write", "ice_candidate", "senderId", candidate.getSenderId(),
+                            "receiverId", candidate.getReceiverId());
+                }
+            });
+        }
+    }
+
+    /**
+     * Atomically removes and returns all unexpired ICE candidates for a user, oldest first.
+     * @return the candidates, or an empty list if none are waiting
+     */
+    public List<IceCandidate> drainCandidates(int userId) {
+        long now = System.currentTimeMillis();
+        List<IceCandidate> result = new ArrayList<>();
+        candidates.computeIfPresent(userId, (receiverId, box) -> {
+            Entry<IceCandidate> entry;
+            while ((entry = box.pollFirst()) != null) {
+                size.decrementAndGet();
+                if (entry.expiresAt > now) {
+                    result.add(entry.payload);
+                }
+            }
+            return null;
+        });
+        return result.isEmpty() ? Collections.<IceCandidate>emptyList() : result;
+    }
+
+    /**
+     * @return the latest exchange between the two users (without the SDP body), or null if none is known
+     */
+    public SdpExchange getCallStatus(int senderId, int receiverId) {
+        Entry<SdpExchange> entry;
+        synchronized (callStatus) {
+            entry = callStatus.get(pairKey(senderId, receiverId));
+        }
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.payload;
+    }
+
+    public void updateCallStatus(int senderId, int receiverId, CallStatus status) {
+        // Readers hold on to the published exchange, so it is replaced rather than changed in place.
+        // Replacing the value keeps the pair's place, which matches its unchanged expiry
+        synchronized (callStatus) {
+            callStatus.computeIfPresent(pairKey(senderId, receiverId), (key, entry) -> {
+                SdpExchange updated = withoutBody(entry.payload);
+                updated.setStatus(status);
+                return new Entry<>(updated, entry.expiresAt);
+            });
+        }
+
+        if (writeBehind != null) {
+            writeBehind.execute(() -> {
+                try {
+                    signalingDao.updateSdpStatus(senderId, receiverId, status);
+                } catch (SQLException e) {
+                    droppedWrites.increment();
+                    LOG.error("write_behind_failed", e, "write", "call_status", "senderId", senderId,
+                            "receiverId", receiverId);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return write-behind writes that never reached the database since startup
+     */
+    public long getDroppedWrites() {
+        return droppedWrites.sum();
+    }
+
+    private void ensureCapacity() {
+        if (size.get() >= MAX_ENTRIES) {
+            purgeExpired();
+            if (size.get() >= MAX_ENTRIES) {
+                throw new IllegalStateException("Signaling mailbox is full");
+            }
+        }
+    }
+
+    private <T> void append(Map<Integer, ArrayDeque<Entry<T>>> boxes, int receiverId, Entry<T> entry, int maxPerReceiver) {
+        boxes.compute(receiverId, (key, box) -> {
+            if (box == null) {
+                box = new ArrayDeque<>();
+            }
+            if (box.size() >= maxPerReceiver) {
+                box.pollFirst();
+                size.decrementAndGet();
+            }
+            box.addLast(entry);
+            size.incrementAndGet();
+            return box;
+        });
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        purgeExpired(mailboxes, now);
+        purgeExpired(candidates, now);
+        synchronized (callStatus) {
+            Iterator<Entry<SdpExchange>> it = callStatus.values().iterator();
+            while (it.hasNext() && it.next().expiresAt <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    private <T> void purgeExpired(Map<Integer, ArrayDeque<Entry<T>>> boxes, long now) {
+        for (Integer receiverId : boxes.keySet()) {
+            boxes.computeIfPresent(receiverId, (key, box) -> {
+                Iterator<Entry<T>> it = box.iterator();
+                while (it.hasNext()) {
+                    if (it.next().expiresAt <= now) {
+                        it.remove();
+                        size.decrementAndGet();
+                    }
+                }
+                return box.isEmpty() ? null : box;
+            });
+        }
+    }
+
+    /**
+     * Stops the sweeper and gives pending write-behind inserts a chance to reach the database.
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            try {
+                if (!writeBehind.awaitTermination(10, TimeUnit.SECONDS)) {
+                    writeBehind.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writeBehind.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static long pairKey(int senderId, int receiverId) {
+        return ((long) senderId << 32) | (receiverId & 0xFFFFFFFFL);
+    }
+
+    private static SdpExchange withoutBody(SdpExchange sdp) {
+        SdpExchange copy = new SdpExchange();
+        copy.setId(sdp.getId());
+        copy.setSenderId(sdp.getSenderId());
+        copy.setReceiverId(sdp.getReceiverId());
+        copy.setType(sdp.getType());
+        copy.setStatus(sdp.getStatus());
+        copy.setCreatedAt(sdp.getCreatedAt());
+        return copy;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Notified on the sender's thread for every delivery. Implementations must not block.
+     */
+    public interface Listener {
+        default void onSdp(SdpExchange sdp) {
+        }
+
+        default void onCandidate(IceCandidate candidate) {
+        }
+    }
+
+    private static final class Entry<T> {
+        final T payload;
+        final long expiresAt;
+
+        Entry(T payload, long expiresAt) {
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
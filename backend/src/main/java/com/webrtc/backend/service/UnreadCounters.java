@@ -0,0 +1,94 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.webrtc.backend.dao.ChatDao;
+
+/**
+ * Unread message counts per receiver and sender, kept in memory.
+ *
+ * The counts are materialized in chat_unread_counts, which is updated in the same transaction
+ * as the messages, and loaded from there at startup; until that load succeeds
+ * {@link #isLoaded()} is false and the counts must not be trusted. They only change through
+ * {@link ChatMessageWriter}, which applies each committed batch and each read marker in order on
+ * its single thread, so memory and table never disagree. Reading a receiver's counts touches
+ * only the senders that have unread messages for them.
+ */
+public class UnreadCounters {
+
+    private static final UnreadCounters INSTANCE = new UnreadCounters();
+
+    // Receiver -> sender -> unread count; senders drop out when their count reaches zero
+    private final Map<Integer, Map<Integer, Integer>> counts = new ConcurrentHashMap<>();
+    private final ChatDao chatDao = new ChatDao();
+    private volatile boolean loaded;
+
+    private UnreadCounters() {
+    }
+
+    public static UnreadCounters getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replaces the counts with the stored ones. Only called on the {@link ChatMessageWriter}
+     * thread, see {@link ChatMessageWriter#loadUnreadCounts()}.
+     */
+    void loadFromDatabase() throws SQLException {
+        Map<Long, Integer> stored = chatDao.getAllUnreadCounts();
+        counts.clear();
+        add(stored);
+        loaded = true;
+        System.out.println("Loaded unread counts for " + counts.size() + " receiver(s).");
+    }
+
+    /**
+     * @return false until the counts have been loaded from the database
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return sender id to unread count for the receiver
+     */
+    public Map<Integer, Integer> getCounts(int receiverId) {
+        Map<Integer, Integer> senders = counts.get(receiverId);
+        return senders != null ? new HashMap<>(senders) : Collections.<Integer, Integer>emptyMap();
+    }
+
+    /**
+     * Adds the counts returned by {@link ChatDao#saveMessages(java.util.List)} once committed.
+     */
+    void add(Map<Long, Integer> unread) {
+        for (Map.Entry<Long, Integer> entry : unread.entrySet()) {
+            int receiverId = (int) (entry.getKey() >>> 32);
+            int senderId = (int) entry.getKey().longValue();
+            counts.computeIfAbsent(receiverId, id -> new ConcurrentHashMap<>())
+                    .merge(senderId, entry.getValue(), Integer::sum);
+        }
+    }
+
+    /**
+     * @return the unread messages from the sender to the receiver
+     */
+    public int getCount(int receiverId, int senderId) {
+        Map<Integer, Integer> senders = counts.get(receiverId);
+        Integer count = senders != null ? senders.get(senderId) : null;
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Mirrors a committed {@link ChatDao#markReadUpTo(int, int, int)} whose watermark passed {@code read} unread messages.
+     */
+    void subtract(int senderId, int receiverId, int read) {
+        counts.computeIfPresent(receiverId, (id, senders) -> {
+            senders.computeIfPresent(senderId, (sender, count) -> count > read ? count - read : null);
+            return senders.isEmpty() ? null : senders;
+        });
+    }
+}
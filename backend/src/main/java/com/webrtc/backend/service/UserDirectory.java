@@ -0,0 +1,42 @@
+package com.webrtc.backend.service;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.webrtc.backend.dao.UserDao;
+
+/**
+ * Remembers which user ids exist, so hot paths can reject an unknown id without a query.
+ *
+ * Users are never deleted, so an id once found is kept for good. Ids that were not found are
+ * not remembered; they are looked up again in case the user registers later.
+ */
+public class UserDirectory {
+
+    private static final UserDirectory INSTANCE = new UserDirectory();
+
+    private final Set<Integer> known = ConcurrentHashMap.newKeySet();
+    private final UserDao userDao = new UserDao();
+
+    private UserDirectory() {
+    }
+
+    public static UserDirectory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if a user with this id exists
+     */
+    public boolean exists(int userId) throws SQLException {
+        if (known.contains(userId)) {
+            return true;
+        }
+        if (userDao.getUserById(userId) == null) {
+            return false;
+        }
+        known.add(userId);
+        return true;
+    }
+}
@@ -1,6 +1,10 @@
 package com.webrtc.backend.service;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -8,19 +12,89 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 
+import com.webrtc.backend.dao.QueryPlanVerifier;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.DatabaseUtil;
+import com.webrtc.backend.util.SchemaMigrator;
+
 @WebListener
 public class UserStatusManager implements ServletContextListener {
 
+    // How often presence transitions are flushed to the database
+    private static final long FLUSH_INTERVAL_SECONDS = Long.getLong("webrtc.presence.flushIntervalSeconds", 5L);
+    // How long to wait before loading the unread counts again after a failure
+    private static final long UNREAD_LOAD_RETRY_SECONDS = Long.getLong("webrtc.chat.unreadLoadRetrySeconds", 5L);
+
+    private static final boolean MIGRATE_ON_STARTUP = Boolean.parseBoolean(System.getProperty("webrtc.db.migrate", "true"));
+    private static final boolean VERIFY_QUERY_PLANS = Boolean.getBoolean("webrtc.db.verifyQueryPlans");
+
     private ScheduledExecutorService scheduler;
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
+        if (MIGRATE_ON_STARTUP) {
+            try {
+                int applied = new SchemaMigrator(DatabaseUtil.getDataSource()).migrate();
+                System.out.println("Database schema is at version " + SchemaMigrator.getLatestVersion()
+                        + " (" + applied + " migration(s) applied).");
+            } catch (SQLException | IOException e) {
+                System.err.println("Schema migration failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        if (VERIFY_QUERY_PLANS) {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                for (String problem : QueryPlanVerifier.verify(conn)) {
+                    System.err.println("Query plan check: " + problem);
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not verify query plans: " + e.getMessage());
+            }
+        }
+        try {
+            PresenceTracker.getInstance().loadFromDatabase();
+        } catch (SQLException e) {
+            System.err.println("Could not load online users at startup: " + e.getMessage());
+        }
+
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        // The task will start after a 0-second delay and then run every 1 minute.
-        scheduler.scheduleAtFixedRate(new UserStatusUpdaterTask(), 0, 1, TimeUnit.MINUTES);
+        loadUnreadCounts();
+        long tickMillis = PresenceTracker.getTickMillis();
+        scheduler.scheduleAtFixedRate(this::expirePresence, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(new UserStatusUpdaterTask(), FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
         System.out.println("User status update scheduler has been started.");
     }
 
+    /**
+     * Loads the unread counts through the chat writer, retrying until it succeeds.
+     */
+    private void loadUnreadCounts() {
+        ChatMessageWriter.getInstance().loadUnreadCounts().whenComplete((loaded, error) -> {
+            if (error == null) {
+                return;
+            }
+            System.err.println("Could not load unread counts, retrying in " + UNREAD_LOAD_RETRY_SECONDS + "s: " + error.getMessage());
+            try {
+                scheduler.schedule(this::loadUnreadCounts, UNREAD_LOAD_RETRY_SECONDS, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        });
+    }
+
+    private void expirePresence() {
+        try {
+            int expired = PresenceTracker.getInstance().expireDue();
+            if (expired > 0) {
+                System.out.println("Set " + expired + " user(s) to offline.");
+            }
+        } catch (Exception e) {
+            // A throwing task would be silently cancelled by the scheduler
+            System.err.println("Error expiring presence: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         if (scheduler != null) {
@@ -35,5 +109,19 @@ public class UserStatusManager implements ServletContextListener {
             }
         }
         System.out.println("User status update scheduler has been shut down.");
+        PresenceBroadcaster.getInstance().shutdown();
+        PresenceTracker.getInstance().flush();
+
+        SignalingEventHub.getInstance().shutdown();
+        // Flush pending write-behind work before the pool goes away
+        SignalingMailbox.getInstance().shutdown();
+        ReadReceipts.getInstance().shutdown();
+        ChatMessageWriter.getInstance().shutdown();
+
+        // Closed last so any task that was still finishing could use it
+        DatabaseUtil.shutdown();
+        System.out.println("Database connection pool has been closed.");
+        // Last, so everything logged during shutdown is written
+        AsyncLog.getInstance().shutdown();
     }
 } 
\ No newline at end of file
@@ -1,27 +1,22 @@
 package com.webrtc.backend.service;
 
-import java.sql.SQLException;
-
-import com.webrtc.backend.dao.UserDao;
+import com.webrtc.backend.metrics.FlightRecording;
 
 public class UserStatusUpdaterTask implements Runnable {
 
-    private final UserDao userDao = new UserDao();
-    private static final int TIMEOUT_MINUTES = 2;
+    private final PresenceTracker presenceTracker = PresenceTracker.getInstance();
 
     @Override
     public void run() {
+        Object event = FlightRecording.beginPresenceFlush();
         try {
-            System.out.println("Running background task: Updating user statuses...");
-            userDao.updateOfflineUsers(TIMEOUT_MINUTES);
-            System.out.println("User status update task finished.");
-        } catch (SQLException e) {
-            // In a real application, you would use a robust logging framework like SLF4J or Log4j
-            System.err.println("Error running user status update task: " + e.getMessage());
-            e.printStackTrace();
+            // Expiry happens on the timing wheel; this writes the accumulated transitions in one batch
+            int transitions = presenceTracker.flush();
+            FlightRecording.presenceFlush(event, transitions);
         } catch (Exception e) {
+            // In a real application, you would use a robust logging framework like SLF4J or Log4j
             System.err.println("An unexpected error occurred in the user status update task: " + e.getMessage());
             e.printStackTrace();
         }
     }
-} 
\ No newline at end of file
+}
@@ -10,14 +10,13 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
 import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/signaling/call-status")
 public class CallStatusServlet extends HttpServlet {
-    private SignalingDao signalingDao = new SignalingDao();
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private SignalingMailbox mailbox = SignalingMailbox.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -25,7 +24,7 @@ public class CallStatusServlet extends HttpServlet {
             int senderId = Integer.parseInt(req.getParameter("from"));
             int receiverId = Integer.parseInt(req.getParameter("to"));
 
-            SdpExchange sdp = signalingDao.getCallStatus(senderId, receiverId);
+            SdpExchange sdp = mailbox.getCallStatus(senderId, receiverId);
 
             if (sdp != null) {
                 Map<String, Object> responsePayload = new HashMap<>();
@@ -33,7 +32,7 @@ public class CallStatusServlet extends HttpServlet {
                 responsePayload.put("by", sdp.getReceiverId()); // The user who last acted on the call
 
                 resp.setContentType("application/json");
-                objectMapper.writeValue(resp.getWriter(), responsePayload);
+                JsonCodec.WRITER.writeValue(resp.getWriter(), responsePayload);
             } else {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -10,15 +10,26 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.webrtc.backend.dao.ChatDao;
 import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.service.ReadReceipts;
+import com.webrtc.backend.service.RecentMessageCache;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/chat/*")
 public class ChatServlet extends HttpServlet {
 
+    private static final int DEFAULT_PAGE_SIZE = Integer.getInteger("webrtc.chat.pageSize", 50);
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("webrtc.chat.maxPageSize", 200);
+
     private final ChatDao chatDao = new ChatDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReadReceipts readReceipts = ReadReceipts.getInstance();
+    private final RecentMessageCache recentMessageCache = RecentMessageCache.getInstance();
+    // No flush after each value, so rows are buffered into larger writes to the response
+    private final ObjectWriter messageWriter = JsonCodec.CHAT_MESSAGE_WRITER.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -38,11 +49,20 @@ public class ChatServlet extends HttpServlet {
                 resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Endpoint not found");
             }
         } catch (Exception e) {
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             e.printStackTrace();
+            // Once rows have gone out the status can no longer change; the array is left unclosed
+            if (!resp.isCommitted()) {
+                resp.resetBuffer();
+                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
+    /**
+     * Returns one page of a conversation, oldest message first.
+     * Without a cursor this is the latest page; {@code before=<id>} pages back through older
+     * messages and {@code after=<id>} fetches newer ones. Page size is {@code limit}.
+     */
     private void handleGetMessages(HttpServletRequest req, HttpServletResponse resp) throws IOException, SQLException {
         String userId1Param = req.getParameter("userId1");
         String userId2Param = req.getParameter("userId2");
@@ -52,19 +72,63 @@ public class ChatServlet extends HttpServlet {
             return;
         }
 
-        try {
-            int userId1 = Integer.parseInt(userId1Param);
-            int userId2 = Integer.parseInt(userId2Param);
-
-            List<ChatMessage> messages = chatDao.getMessages(userId1, userId2);
-            
-            // Mark messages from userId2 to userId1 as read
-            chatDao.markAllAsRead(userId2, userId1);
+        String beforeParam = req.getParameter("before");
+        String afterParam = req.getParameter("after");
+        if (beforeParam != null && afterParam != null) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Use either before or after, not both");
+            return;
+        }
 
-            resp.setContentType("application/json");
-            resp.getWriter().write(objectMapper.writeValueAsString(messages));
+        int userId1;
+        int userId2;
+        try {
+            userId1 = Integer.parseInt(userId1Param);
+            userId2 = Integer.parseInt(userId2Param);
         } catch (NumberFormatException e) {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid user ID format");
+            return;
+        }
+
+        int limit;
+        int before;
+        int after;
+        try {
+            String limitParam = req.getParameter("limit");
+            limit = limitParam != null ? Integer.parseInt(limitParam) : DEFAULT_PAGE_SIZE;
+            before = beforeParam != null ? Integer.parseInt(beforeParam) : Integer.MAX_VALUE;
+            after = afterParam != null ? Integer.parseInt(afterParam) : 0;
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid limit or cursor");
+            return;
+        }
+        if (limit < 1) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be positive");
+            return;
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+
+        // The page is read before anything is written, so the connection is back in the pool
+        // before a slow client is sent the rows
+        List<ChatMessage> page;
+        if (afterParam != null) {
+            page = chatDao.getMessagesAfter(userId1, userId2, after, limit);
+        } else if (beforeParam != null) {
+            page = chatDao.getMessagesBefore(userId1, userId2, before, limit);
+        } else {
+            // The latest page is what opening a chat asks for, usually served from memory
+            page = recentMessageCache.getLatest(userId1, userId2, limit);
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        MessageArrayWriter rows = new MessageArrayWriter(resp);
+        rows.write(page);
+        rows.finish();
+
+        // Opening the conversation (latest page) or catching up moves userId1's read watermark
+        // for userId2 to the newest message returned; written in the background
+        if (beforeParam == null && rows.lastId > 0) {
+            readReceipts.markRead(userId1, userId2, rows.lastId);
         }
     }
 
@@ -78,12 +142,49 @@ public class ChatServlet extends HttpServlet {
 
         try {
             int userId = Integer.parseInt(userIdParam);
-            List<ChatMessage> messages = chatDao.getUnreadMessages(userId);
 
             resp.setContentType("application/json");
-            resp.getWriter().write(objectMapper.writeValueAsString(messages));
+            resp.setCharacterEncoding("UTF-8");
+            // Read and written a page at a time, so memory and the time a connection is held stay
+            // bounded however many messages are unread
+            MessageArrayWriter rows = new MessageArrayWriter(resp);
+            List<ChatMessage> page;
+            do {
+                page = chatDao.getUnreadMessages(userId, rows.lastId, MAX_PAGE_SIZE);
+                rows.write(page);
+            } while (page.size() == MAX_PAGE_SIZE);
+            rows.finish();
         } catch (NumberFormatException e) {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid user ID format");
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Writes messages to the response as the elements of one JSON array, remembering the id of
+     * the last one. The array is only closed by {@link #finish()}: if a later page fails after
+     * earlier ones were sent, the client gets invalid JSON rather than a short but valid list.
+     */
+    private class MessageArrayWriter {
+
+        private final JsonGenerator json;
+        private int lastId;
+
+        MessageArrayWriter(HttpServletResponse resp) throws IOException {
+            json = JsonCodec.mapper().getFactory().createGenerator(resp.getOutputStream())
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            json.writeStartArray();
+        }
+
+        void write(List<ChatMessage> messages) throws IOException {
+            for (ChatMessage message : messages) {
+                messageWriter.writeValue(json, message);
+                lastId = message.getId();
+            }
+        }
+
+        void finish() throws IOException {
+            json.writeEndArray();
+            json.close();
+        }
+    }
+}
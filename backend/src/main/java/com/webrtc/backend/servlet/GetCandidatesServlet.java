@@ -1,8 +1,7 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.ServletException;
@@ -11,14 +10,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
 import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 
-@WebServlet("/api/signaling/get-candidates")
+/**
+ * Returns and removes the pending ICE candidates for a user, or an empty array.
+ * With {@code ?wait=<seconds>} the request is held open until a candidate arrives or the wait expires.
+ */
+@WebServlet(urlPatterns = "/api/signaling/get-candidates", asyncSupported = true)
 public class GetCandidatesServlet extends HttpServlet {
-    private SignalingDao signalingDao = new SignalingDao();
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private SignalingMailbox mailbox = SignalingMailbox.getInstance();
+    private LongPollRegistry longPollRegistry = LongPollRegistry.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -31,25 +34,45 @@ public class GetCandidatesServlet extends HttpServlet {
                 return;
             }
             int receiverId = Integer.parseInt(userIdStr);
-            List<IceCandidate> candidates = signalingDao.getIceCandidates(receiverId);
-
-            if (candidates != null && !candidates.isEmpty()) {
-                resp.setContentType("application/json");
-                objectMapper.writeValue(resp.getWriter(), candidates);
-                // After sending the candidates, delete them to avoid resending
-                signalingDao.deleteIceCandidates(receiverId);
-            } else {
+            int waitSeconds;
+            try {
+                waitSeconds = LongPollRegistry.parseWaitSeconds(req);
+            } catch (NumberFormatException e) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("Invalid wait parameter");
+                return;
+            }
+
+            if (waitSeconds > 0) {
+                longPollRegistry.park(req, receiverId, waitSeconds,
+                        response -> writeCandidates(receiverId, response),
+                        this::writeEmpty);
+                return;
+            }
+
+            if (!writeCandidates(receiverId, resp)) {
                 // If no candidates, send back an empty array
-                resp.setContentType("application/json");
-                objectMapper.writeValue(resp.getWriter(), new ArrayList<>());
+                writeEmpty(resp);
             }
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write("Missing or invalid userId parameter");
-        } catch (SQLException e) {
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write("{\"error\": \"Database error fetching candidates\"}");
-            e.printStackTrace();
         }
     }
-} 
\ No newline at end of file
+
+    private boolean writeCandidates(int receiverId, HttpServletResponse resp) throws IOException {
+        // Draining removes them, so they are never sent twice
+        List<IceCandidate> candidates = mailbox.drainCandidates(receiverId);
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        resp.setContentType("application/json");
+        JsonCodec.ICE_CANDIDATE_LIST_WRITER.writeValue(resp.getWriter(), candidates);
+        return true;
+    }
+
+    private void writeEmpty(HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        JsonCodec.ICE_CANDIDATE_LIST_WRITER.writeValue(resp.getWriter(), Collections.emptyList());
+    }
+}
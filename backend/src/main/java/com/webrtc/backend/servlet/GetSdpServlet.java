@@ -8,14 +8,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
 import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 
-@WebServlet("/api/signaling/get-sdp")
+/**
+ * Returns the next offer or answer for a user, or 404 if there is none.
+ * With {@code ?wait=<seconds>} the request is held open until one arrives or the wait expires.
+ */
+@WebServlet(urlPatterns = "/api/signaling/get-sdp", asyncSupported = true)
 public class GetSdpServlet extends HttpServlet {
-    private final SignalingDao signalingDao = new SignalingDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SignalingMailbox mailbox = SignalingMailbox.getInstance();
+    private final LongPollRegistry longPollRegistry = LongPollRegistry.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -29,15 +33,23 @@ public class GetSdpServlet extends HttpServlet {
 
         try {
             int userId = Integer.parseInt(userIdParam);
-            
-            // Use the new method that consumes the SDP
-            SdpExchange sdp = signalingDao.consumeSdpForUser(userId);
-
-            if (sdp != null) {
-                // Found a new call notification, send it to the frontend
-                resp.setContentType("application/json");
-                resp.getWriter().write(objectMapper.writeValueAsString(sdp));
-            } else {
+            int waitSeconds;
+            try {
+                waitSeconds = LongPollRegistry.parseWaitSeconds(req);
+            } catch (NumberFormatException e) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("{\"error\": \"Invalid wait parameter\"}");
+                return;
+            }
+
+            if (waitSeconds > 0) {
+                longPollRegistry.park(req, userId, waitSeconds,
+                        response -> writeSdp(userId, response),
+                        response -> response.setStatus(HttpServletResponse.SC_NOT_FOUND));
+                return;
+            }
+
+            if (!writeSdp(userId, resp)) {
                 // This is the normal, successful case when there are no new calls
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -46,4 +58,16 @@ public class GetSdpServlet extends HttpServlet {
             resp.getWriter().write("{\"error\": \"Invalid userId parameter\"}");
         }
     }
-} 
\ No newline at end of file
+
+    private boolean writeSdp(int userId, HttpServletResponse resp) throws IOException {
+        // Consume from the in-memory mailbox; polling never touches the database
+        SdpExchange sdp = mailbox.consume(userId);
+        if (sdp == null) {
+            return false;
+        }
+        // Found a new call notification, send it to the frontend
+        resp.setContentType("application/json");
+        JsonCodec.SDP_WRITER.writeValue(resp.getWriter(), sdp);
+        return true;
+    }
+}
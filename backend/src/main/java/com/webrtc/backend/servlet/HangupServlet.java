@@ -10,16 +10,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.webrtc.backend.model.CallPartiesRequest;
 import com.webrtc.backend.model.CallStatus;
+import com.webrtc.backend.service.SignalingEventHub;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 import com.webrtc.backend.websocket.ChatWebSocket;
 
 @WebServlet("/api/signaling/hangup")
 public class HangupServlet extends HttpServlet {
-    private final SignalingDao signalingDao = new SignalingDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SignalingMailbox mailbox = SignalingMailbox.getInstance();
+    private final SignalingEventHub eventHub = SignalingEventHub.getInstance();
 
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -35,22 +37,22 @@ public class HangupServlet extends HttpServlet {
         resp.setHeader("Access-Control-Allow-Origin", "*");
 
         try {
-            Map<String, String> payload = objectMapper.readValue(req.getReader(), new TypeReference<Map<String, String>>() {});
-            String fromIdStr = payload.get("from");
-            String toIdStr = payload.get("to");
+            CallPartiesRequest payload = JsonCodec.CALL_PARTIES_REQUEST_READER.readValue(req.getReader());
+            Integer fromId = payload.getFrom();
+            Integer toId = payload.getTo();
 
-            if (fromIdStr == null || toIdStr == null) {
+            if (fromId == null || toId == null) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\": \"Missing 'from' or 'to' parameter\"}");
                 return;
             }
 
-            int hangupUserId = Integer.parseInt(fromIdStr);
-            int otherUserId = Integer.parseInt(toIdStr);
+            int hangupUserId = fromId;
+            int otherUserId = toId;
 
             // Mark the call as rejected/ended in both directions
-            signalingDao.updateSdpStatus(hangupUserId, otherUserId, CallStatus.REJECTED);
-            signalingDao.updateSdpStatus(otherUserId, hangupUserId, CallStatus.REJECTED);
+            mailbox.updateCallStatus(hangupUserId, otherUserId, CallStatus.REJECTED);
+            mailbox.updateCallStatus(otherUserId, hangupUserId, CallStatus.REJECTED);
 
             // Create a special "hangup" message to forward
             Map<String, Object> hangupMessage = new HashMap<>();
@@ -58,10 +60,11 @@ public class HangupServlet extends HttpServlet {
             hangupMessage.put("from", hangupUserId);
 
             // Use the WebSocket to send the notification to the other user
-            ChatWebSocket.notifyUser(otherUserId, objectMapper.writeValueAsString(hangupMessage));
+            ChatWebSocket.notifyUser(otherUserId, JsonCodec.WRITER.writeValueAsString(hangupMessage));
+            eventHub.publish(otherUserId, "hangup", hangupMessage);
 
             resp.setStatus(HttpServletResponse.SC_OK);
-        } catch (NumberFormatException e) {
+        } catch (InvalidFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write("{\"error\": \"Invalid 'from' or 'to' parameter. They must be numbers.\"}");
         } catch (Exception e) {
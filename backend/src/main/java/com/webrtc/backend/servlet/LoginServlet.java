@@ -10,16 +10,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webrtc.backend.dao.UserDao;
 import com.webrtc.backend.model.User;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.JsonCodec;
 import com.webrtc.backend.util.PasswordUtil;
 
 @WebServlet("/api/auth/login")
 public class LoginServlet extends HttpServlet {
 
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("login");
+
     private final UserDao userDao = new UserDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -38,38 +40,34 @@ public class LoginServlet extends HttpServlet {
         resp.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
 
         try {
-            User credentials = objectMapper.readValue(req.getReader(), User.class);
-            System.out.println("Login attempt for msisdn: " + credentials.getMsisdn());
+            User credentials = JsonCodec.USER_READER.readValue(req.getReader());
 
             User user = userDao.getUserByMsisdn(credentials.getMsisdn());
 
             if (user != null) {
-                System.out.println("User found: " + user.getUsername());
                 boolean passwordMatches = PasswordUtil.checkPassword(credentials.getPassword(), user.getPasswordHash());
-                System.out.println("Password check result: " + passwordMatches);
 
                 if (passwordMatches) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("userId", user.getId());
                 
                 resp.setContentType("application/json");
-                resp.getWriter().write(objectMapper.writeValueAsString(result));
-                    System.out.println("Login successful for user: " + user.getUsername());
+                JsonCodec.WRITER.writeValue(resp.getWriter(), result);
+                    LOG.info("succeeded", "msisdn", credentials.getMsisdn(), "userId", user.getId());
                 } else {
-                    System.out.println("Login failed: Incorrect password for user " + user.getUsername());
+                    LOG.info("failed", "msisdn", credentials.getMsisdn(), "userId", user.getId(), "reason", "bad_password");
                     resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     resp.setContentType("application/json");
                     resp.getWriter().write("{\"error\": \"Incorrect password\"}");
                 }
             } else {
-                System.out.println("Login failed: No user found with msisdn " + credentials.getMsisdn());
+                LOG.info("failed", "msisdn", credentials.getMsisdn(), "reason", "unknown_msisdn");
                 resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 resp.setContentType("application/json");
                 resp.getWriter().write("{\"error\": \"Phone number not found\"}");
             }
         } catch (Exception e) {
-            System.out.println("An exception occurred during login: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("error", e);
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
@@ -1,29 +1,26 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.util.Map;
-
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.UserDao;
+import com.webrtc.backend.model.UserIdRequest;
+import com.webrtc.backend.service.PresenceTracker;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/auth/logout")
 public class LogoutServlet extends HttpServlet {
 
-    private final UserDao userDao = new UserDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PresenceTracker presenceTracker = PresenceTracker.getInstance();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            Map<String, Integer> payload = objectMapper.readValue(req.getReader(), new TypeReference<Map<String, Integer>>(){});
-            Integer userId = payload.get("userId");
+            UserIdRequest payload = JsonCodec.USER_ID_REQUEST_READER.readValue(req.getReader());
+            Integer userId = payload.getUserId();
 
             if (userId == null || userId <= 0) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -32,7 +29,7 @@ public class LogoutServlet extends HttpServlet {
                 return;
             }
 
-            userDao.setUserOffline(userId);
+            presenceTracker.markOffline(userId);
             resp.setStatus(HttpServletResponse.SC_OK);
 
         } catch (Exception e) {
@@ -0,0 +1,190 @@
+package com.webrtc.backend.servlet;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.service.SignalingMailbox;
+
+/**
+ * Parks long-poll signaling requests without holding a container thread.
+ *
+ * A parked request is retried whenever the mailbox delivers something to its user,
+ * and completed with its empty response when the timeout expires.
+ */
+public class LongPollRegistry implements SignalingMailbox.Listener {
+
+    // Upper bound for the client-supplied ?wait= value
+    static final int MAX_WAIT_SECONDS = Integer.getInteger("webrtc.signaling.longPollMaxSeconds", 30);
+
+    private static final LongPollRegistry INSTANCE = new LongPollRegistry();
+
+    private final Map<Integer, Queue<Parked>> parked = new ConcurrentHashMap<>();
+
+    private LongPollRegistry() {
+        SignalingMailbox.getInstance().addListener(this);
+    }
+
+    public static LongPollRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Writes the response if there is something to deliver.
+     * @return true if the response was written, false to keep waiting
+     */
+    interface Attempt {
+        boolean tryComplete(HttpServletResponse resp) throws IOException;
+    }
+
+    /**
+     * Writes the response sent when nothing arrived in time.
+     */
+    interface Fallback {
+        void complete(HttpServletResponse resp) throws IOException;
+    }
+
+    /**
+     * Reads the ?wait= parameter.
+     * @return the wait in seconds capped to the configured maximum, or 0 for a plain poll
+     * @throws NumberFormatException if the parameter is not a number
+     */
+    static int parseWaitSeconds(HttpServletRequest req) {
+        String waitParam = req.getParameter("wait");
+        if (waitParam == null) {
+            return 0;
+        }
+        return Math.max(0, Math.min(Integer.parseInt(waitParam), MAX_WAIT_SECONDS));
+    }
+
+    /**
+     * Parks the request until {@code attempt} succeeds or {@code waitSeconds} elapse.
+     * The attempt is tried once immediately after registering, so nothing that arrives
+     * in between can be missed.
+     */
+    void park(HttpServletRequest req, int userId, int waitSeconds, Attempt attempt, Fallback fallback) {
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(waitSeconds * 1000L);
+
+        Parked p = new Parked(userId, ctx, attempt, fallback);
+        ctx.addListener(p);
+        parked.computeIfAbsent(userId, id -> new ConcurrentLinkedQueue<>()).add(p);
+        p.tryDeliver();
+    }
+
+    @Override
+    public void onSdp(SdpExchange sdp) {
+        wake(sdp.getReceiverId());
+    }
+
+    @Override
+    public void onCandidate(IceCandidate candidate) {
+        wake(candidate.getReceiverId());
+    }
+
+    private void wake(int userId) {
+        Queue<Parked> waiting = parked.get(userId);
+        if (waiting == null) {
+            return;
+        }
+        for (Parked p : waiting) {
+            try {
+                // Write on a container thread, not the sender's
+                p.ctx.start(p::tryDeliver);
+            } catch (IllegalStateException e) {
+                // Completed or timed out concurrently
+            }
+        }
+    }
+
+    private void remove(Parked p) {
+        parked.computeIfPresent(p.userId, (id, queue) -> {
+            queue.remove(p);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    public int getParkedCount() {
+        int count = 0;
+        for (Queue<Parked> queue : parked.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    private final class Parked implements AsyncListener {
+        final int userId;
+        final AsyncContext ctx;
+        final Attempt attempt;
+        final Fallback fallback;
+        private boolean done;
+
+        Parked(int userId, AsyncContext ctx, Attempt attempt, Fallback fallback) {
+            this.userId = userId;
+            this.ctx = ctx;
+            this.attempt = attempt;
+            this.fallback = fallback;
+        }
+
+        synchronized void tryDeliver() {
+            if (done) {
+                return;
+            }
+            try {
+                if (attempt.tryComplete((HttpServletResponse) ctx.getResponse())) {
+                    finish();
+                }
+            } catch (IOException | RuntimeException e) {
+                ((HttpServletResponse) ctx.getResponse()).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                finish();
+                e.printStackTrace();
+            }
+        }
+
+        private void finish() {
+            done = true;
+            remove(this);
+            ctx.complete();
+        }
+
+        @Override
+        public synchronized void onTimeout(AsyncEvent event) throws IOException {
+            if (done) {
+                return;
+            }
+            try {
+                fallback.complete((HttpServletResponse) ctx.getResponse());
+            } finally {
+                finish();
+            }
+        }
+
+        @Override
+        public synchronized void onError(AsyncEvent event) {
+            // Client went away; nothing can be written any more
+            done = true;
+            remove(this);
+        }
+
+        @Override
+        public synchronized void onComplete(AsyncEvent event) {
+            done = true;
+            remove(this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not used
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.webrtc.backend.servlet;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.webrtc.backend.metrics.Metrics;
+import com.webrtc.backend.metrics.RouteMetrics;
+
+/**
+ * Records the latency and status code of every API request under the servlet mapping that
+ * handled it, e.g. {@code /api/chat/*}.
+ *
+ * The routes are looked up once at startup from the servlet registrations, so a request only
+ * does a map lookup and a few atomic increments and allocates nothing. Paths no servlet maps
+ * are counted together as {@code unmatched}. Async requests, such as long polls, are timed
+ * until they complete by a listener shared by their route; their start time is kept as a
+ * request attribute, which boxes it and is the one allocation they make here.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    private static final String API_PREFIX = "/api/";
+    private static final String START_ATTRIBUTE = MetricsFilter.class.getName() + ".start";
+
+    // Servlet path -> route; only read after init
+    private final Map<String, Route> routes = new HashMap<>();
+    private Route unmatched;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        Metrics metrics = Metrics.getInstance();
+        for (ServletRegistration registration : filterConfig.getServletContext().getServletRegistrations().values()) {
+            for (String mapping : registration.getMappings()) {
+                if (!mapping.startsWith(API_PREFIX)) {
+                    continue;
+                }
+                // For a path mapping the servlet path is the part before the wildcard
+                String servletPath = mapping.endsWith("/*") ? mapping.substring(0, mapping.length() - 2) : mapping;
+                routes.put(servletPath, new Route(metrics.route(mapping)));
+            }
+        }
+        unmatched = new Route(metrics.route("unmatched"));
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        Route route = routes.get(request.getServletPath());
+        if (route == null) {
+            route = unmatched;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            if (failed) {
+                route.metrics.record(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, System.nanoTime() - start);
+            } else if (request.isAsyncStarted()) {
+                request.setAttribute(START_ATTRIBUTE, start);
+                request.getAsyncContext().addListener(route.completion);
+            } else {
+                route.metrics.record(response.getStatus(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Not used
+    }
+
+    private static final class Route {
+        final RouteMetrics metrics;
+        final CompletionListener completion;
+
+        Route(RouteMetrics metrics) {
+            this.metrics = metrics;
+            this.completion = new CompletionListener(metrics);
+        }
+    }
+
+    /**
+     * Records an async request of one route once it completes, after a timeout or error as well.
+     */
+    private static class CompletionListener implements AsyncListener {
+
+        private final RouteMetrics route;
+
+        CompletionListener(RouteMetrics route) {
+            this.route = route;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            Object start = event.getSuppliedRequest().getAttribute(START_ATTRIBUTE);
+            if (start instanceof Long) {
+                route.record(((HttpServletResponse) event.getSuppliedResponse()).getStatus(),
+                        System.nanoTime() - (Long) start);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Followed by onComplete
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Followed by onComplete
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not used
+        }
+    }
+}
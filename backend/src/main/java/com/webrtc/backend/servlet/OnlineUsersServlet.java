@@ -1,7 +1,6 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -9,37 +8,56 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.webrtc.backend.dao.UserDao;
-import com.webrtc.backend.model.User;
+import com.webrtc.backend.service.PresenceTracker;
 
+/**
+ * Lists online users as {@code [{"userId", "username"}]}.
+ *
+ * The list is served from a pre-serialized snapshot with an ETag, so an unchanged list costs
+ * a 304. With {@code ?since=<version>} only the joins and leaves after that version are returned
+ * as {@code {"version", "joined", "left"}}; if the version is too old the full list is sent
+ * instead. Full responses carry their version in the X-Presence-Version header.
+ */
 @WebServlet("/api/users/online")
 public class OnlineUsersServlet extends HttpServlet {
 
-    private final UserDao userDao = new UserDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PresenceTracker presenceTracker = PresenceTracker.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            List<User> onlineUsers = userDao.getOnlineUsers();
-
-            ArrayNode usersArray = objectMapper.createArrayNode();
-            for (User user : onlineUsers) {
-                ObjectNode userNode = objectMapper.createObjectNode();
-                userNode.put("userId", user.getId());
-                userNode.put("username", user.getUsername());
-                usersArray.add(userNode);
+            String sinceParam = req.getParameter("since");
+            if (sinceParam != null) {
+                byte[] delta = presenceTracker.getChangesSince(Long.parseLong(sinceParam));
+                if (delta != null) {
+                    resp.setContentType("application/json");
+                    resp.getOutputStream().write(delta);
+                    return;
+                }
+                // Too old to compute a delta, fall back to the full list
+            }
+
+            PresenceTracker.Snapshot snapshot = presenceTracker.getSnapshot();
+            String etag = snapshot.getEtag();
+            resp.setHeader("ETag", etag);
+            resp.setHeader("X-Presence-Version", Long.toString(snapshot.getVersion()));
+            resp.setHeader("Cache-Control", "no-cache");
+
+            if (etag.equals(req.getHeader("If-None-Match"))) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
             }
 
             resp.setContentType("application/json");
-            resp.getWriter().write(objectMapper.writeValueAsString(usersArray));
+            resp.setContentLength(snapshot.getJson().length);
+            resp.getOutputStream().write(snapshot.getJson());
 
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\": \"Invalid since parameter\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             e.printStackTrace();
         }
     }
-} 
\ No newline at end of file
+}
@@ -8,21 +8,20 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webrtc.backend.dao.UserDao;
 import com.webrtc.backend.model.User;
+import com.webrtc.backend.util.JsonCodec;
 import com.webrtc.backend.util.PasswordUtil;
 
 @WebServlet("/api/auth/register")
 public class RegisterServlet extends HttpServlet {
 
     private final UserDao userDao = new UserDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            User user = objectMapper.readValue(req.getReader(), User.class);
+            User user = JsonCodec.USER_READER.readValue(req.getReader());
 
             // Check if user with the same msisdn already exists
             if (userDao.getUserByMsisdn(user.getMsisdn()) != null) {
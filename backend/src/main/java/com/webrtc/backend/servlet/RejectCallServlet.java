@@ -1,7 +1,7 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.Collections;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -9,15 +9,17 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.webrtc.backend.model.CallPartiesRequest;
 import com.webrtc.backend.model.CallStatus;
+import com.webrtc.backend.service.SignalingEventHub;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/signaling/reject-call")
 public class RejectCallServlet extends HttpServlet {
-    private final SignalingDao signalingDao = new SignalingDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SignalingMailbox mailbox = SignalingMailbox.getInstance();
+    private final SignalingEventHub eventHub = SignalingEventHub.getInstance();
 
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -33,24 +35,25 @@ public class RejectCallServlet extends HttpServlet {
         resp.setHeader("Access-Control-Allow-Origin", "*");
         
         try {
-            Map<String, String> payload = objectMapper.readValue(req.getReader(), new TypeReference<Map<String, String>>() {});
-            String fromIdStr = payload.get("from");
-            String toIdStr = payload.get("to");
+            CallPartiesRequest payload = JsonCodec.CALL_PARTIES_REQUEST_READER.readValue(req.getReader());
+            Integer fromId = payload.getFrom();
+            Integer toId = payload.getTo();
 
-            if (fromIdStr == null || toIdStr == null) {
+            if (fromId == null || toId == null) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\": \"Missing 'from' or 'to' parameter\"}");
                 return;
             }
 
-            int rejectorId = Integer.parseInt(fromIdStr);
-            int callerId = Integer.parseInt(toIdStr);
+            int rejectorId = fromId;
+            int callerId = toId;
 
             // The original offer was from 'callerId' to 'rejectorId'
-            signalingDao.updateSdpStatus(callerId, rejectorId, CallStatus.REJECTED);
+            mailbox.updateCallStatus(callerId, rejectorId, CallStatus.REJECTED);
+            eventHub.publish(callerId, "reject", Collections.singletonMap("from", rejectorId));
 
             resp.setStatus(HttpServletResponse.SC_OK);
-        } catch (NumberFormatException e) {
+        } catch (InvalidFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write("{\"error\": \"Invalid 'from' or 'to' parameter. They must be numbers.\"}");
         } catch (Exception e) {
@@ -8,21 +8,23 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
 import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/signaling/send-candidate")
 public class SendCandidateServlet extends HttpServlet {
-    private SignalingDao signalingDao = new SignalingDao();
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private SignalingMailbox mailbox = SignalingMailbox.getInstance();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            IceCandidate candidate = objectMapper.readValue(req.getReader(), IceCandidate.class);
-            signalingDao.saveIceCandidate(candidate);
+            IceCandidate candidate = JsonCodec.ICE_CANDIDATE_READER.readValue(req.getReader());
+            mailbox.sendCandidate(candidate);
             resp.setStatus(HttpServletResponse.SC_OK);
+        } catch (IllegalStateException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.getWriter().write("{\"error\": \"Signaling mailbox is full, try again later\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             e.printStackTrace();
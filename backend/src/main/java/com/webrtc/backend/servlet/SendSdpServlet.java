@@ -1,7 +1,6 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.util.stream.Collectors;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -9,14 +8,17 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.SignalingDao;
 import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.service.SignalingMailbox;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/signaling/send-sdp")
 public class SendSdpServlet extends HttpServlet {
-    private SignalingDao signalingDao = new SignalingDao();
-    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("sdp");
+
+    private SignalingMailbox mailbox = SignalingMailbox.getInstance();
 
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -33,19 +35,19 @@ public class SendSdpServlet extends HttpServlet {
         resp.setHeader("Access-Control-Allow-Origin", "*");
         
         try {
-            // Read and log the raw JSON payload from the request
-            String jsonPayload = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-            System.out.println("--- RECEIVED SDP PAYLOAD ---");
-            System.out.println(jsonPayload);
-            System.out.println("--------------------------");
-
-            // Process the JSON from the string we just logged
-            SdpExchange sdp = objectMapper.readValue(jsonPayload, SdpExchange.class);
-            signalingDao.saveSdp(sdp);
+            SdpExchange sdp = JsonCodec.SDP_READER.readValue(req.getReader());
+            // The SDP itself is cut to -Dwebrtc.log.maxFieldLength when written
+            LOG.info("received", "senderId", sdp.getSenderId(), "receiverId", sdp.getReceiverId(),
+                    "type", sdp.getType(), "sdpLength", sdp.getSdp() != null ? sdp.getSdp().length() : 0,
+                    "sdp", sdp.getSdp());
+            mailbox.send(sdp);
             resp.setStatus(HttpServletResponse.SC_OK);
+        } catch (IllegalStateException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.getWriter().write("{\"error\": \"Signaling mailbox is full, try again later\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            e.printStackTrace();
+            LOG.error("failed", e);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.webrtc.backend.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.webrtc.backend.service.SignalingEventHub;
+
+/**
+ * Server-Sent Events stream of a user's signaling events:
+ * {@code offer}, {@code answer}, {@code candidate}, {@code reject} and {@code hangup}.
+ *
+ * Browsers reconnect automatically and send the Last-Event-ID header, and anything still in
+ * the user's replay buffer is sent again. If events were already evicted, a {@code resync}
+ * event tells the client to refresh its state through the regular endpoints.
+ */
+@WebServlet(urlPatterns = "/api/signaling/events", asyncSupported = true)
+public class SignalingEventsServlet extends HttpServlet {
+
+    // Connections are recycled periodically; EventSource reconnects transparently
+    private static final long STREAM_TIMEOUT_MILLIS = Long.getLong("webrtc.events.streamTimeoutSeconds", 300L) * 1000;
+    // A subscriber this far behind is disconnected and catches up through replay
+    private static final int MAX_PENDING_EVENTS = Integer.getInteger("webrtc.events.maxPendingPerStream", 256);
+
+    private final SignalingEventHub eventHub = SignalingEventHub.getInstance();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String userIdParam = req.getParameter("userId");
+        if (userIdParam == null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\": \"Missing userId parameter\"}");
+            return;
+        }
+
+        int userId;
+        long lastEventId;
+        try {
+            userId = Integer.parseInt(userIdParam);
+            // EventSource sends the header on reconnect; the query parameter lets a fresh page resume too
+            String lastEventIdParam = req.getHeader("Last-Event-ID");
+            if (lastEventIdParam == null) {
+                lastEventIdParam = req.getParameter("lastEventId");
+            }
+            lastEventId = lastEventIdParam != null ? Long.parseLong(lastEventIdParam.trim()) : -1;
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\": \"Invalid userId or Last-Event-ID\"}");
+            return;
+        }
+
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no");
+        resp.flushBuffer();
+
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(STREAM_TIMEOUT_MILLIS);
+        EventStream stream = new EventStream(userId, ctx);
+        ctx.addListener(stream);
+
+        if (!eventHub.subscribe(userId, stream, lastEventId)) {
+            stream.sendRaw("event: resync\ndata: {}\n\n");
+        }
+    }
+
+    /**
+     * One open SSE response. Events are queued by the hub and written on a container thread,
+     * so a slow client never blocks whoever published the event.
+     */
+    private final class EventStream implements SignalingEventHub.Subscriber, AsyncListener {
+        private final int userId;
+        private final AsyncContext ctx;
+        private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        EventStream(int userId, AsyncContext ctx) {
+            this.userId = userId;
+            this.ctx = ctx;
+        }
+
+        @Override
+        public boolean offer(SignalingEventHub.Event event) {
+            if (closed) {
+                return false;
+            }
+            if (pendingCount.get() >= MAX_PENDING_EVENTS) {
+                // The hub drops us when we return false
+                closed = true;
+                completeQuietly();
+                return false;
+            }
+            StringBuilder frame = new StringBuilder(event.getData().length() + 48);
+            frame.append("id: ").append(event.getId()).append('\n')
+                    .append("event: ").append(event.getName()).append('\n');
+            // SSE data may not contain raw newlines; JSON from Jackson does not, but be safe
+            for (String line : event.getData().split("\n", -1)) {
+                frame.append("data: ").append(line).append('\n');
+            }
+            frame.append('\n');
+            return sendRaw(frame.toString());
+        }
+
+        @Override
+        public void ping() {
+            sendRaw(": ping\n\n");
+        }
+
+        boolean sendRaw(String frame) {
+            if (closed) {
+                return false;
+            }
+            pending.add(frame);
+            pendingCount.incrementAndGet();
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    ctx.start(this::drain);
+                } catch (IllegalStateException e) {
+                    closed = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void drain() {
+            try {
+                PrintWriter writer = ctx.getResponse().getWriter();
+                String frame;
+                while ((frame = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    writer.write(frame);
+                }
+                writer.flush();
+                if (writer.checkError()) {
+                    close();
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            // Anything queued after the last poll but before the flag was cleared
+            if (!pending.isEmpty() && !closed && draining.compareAndSet(false, true)) {
+                try {
+                    ctx.start(this::drain);
+                } catch (IllegalStateException e) {
+                    closed = true;
+                }
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            eventHub.unsubscribe(userId, this);
+            completeQuietly();
+        }
+
+        private void completeQuietly() {
+            try {
+                ctx.complete();
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed = true;
+            eventHub.unsubscribe(userId, this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not used
+        }
+    }
+}
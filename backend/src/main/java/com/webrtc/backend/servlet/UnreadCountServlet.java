@@ -1,7 +1,6 @@
 package com.webrtc.backend.servlet;
 
 import java.io.IOException;
-import java.sql.SQLException;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -10,13 +9,12 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.ChatDao;
+import com.webrtc.backend.service.UnreadCounters;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/chat/unread-count")
 public class UnreadCountServlet extends HttpServlet {
-    private final ChatDao chatDao = new ChatDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UnreadCounters unreadCounters = UnreadCounters.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -28,20 +26,24 @@ public class UnreadCountServlet extends HttpServlet {
             return;
         }
 
+        if (!unreadCounters.isLoaded()) {
+            // Serving zeros would hide every unread message until the counts are loaded
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", "5");
+            resp.getWriter().write("{\"error\": \"Unread counts are not loaded yet, try again later\"}");
+            return;
+        }
+
         try {
             int userId = Integer.parseInt(userIdParam);
-            Map<Integer, Integer> unreadCounts = chatDao.getUnreadMessageCounts(userId);
+            Map<Integer, Integer> unreadCounts = unreadCounters.getCounts(userId);
             
             resp.setContentType("application/json");
-            resp.getWriter().write(objectMapper.writeValueAsString(unreadCounts));
+            JsonCodec.WRITER.writeValue(resp.getWriter(), unreadCounts);
 
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write("{\"error\": \"Invalid userId parameter\"}");
-        } catch (SQLException e) {
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write("{\"error\": \"Database error fetching unread counts\"}");
-            e.printStackTrace();
         }
     }
 } 
\ No newline at end of file
@@ -9,14 +9,13 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webrtc.backend.dao.UserDao;
 import com.webrtc.backend.model.User;
+import com.webrtc.backend.util.JsonCodec;
 
 @WebServlet("/api/users/details")
 public class UserDetailsServlet extends HttpServlet {
     private final UserDao userDao = new UserDao();
-    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -34,7 +33,7 @@ public class UserDetailsServlet extends HttpServlet {
 
             if (user != null) {
                 resp.setContentType("application/json");
-                resp.getWriter().write(objectMapper.writeValueAsString(user));
+                JsonCodec.USER_WRITER.writeValue(resp.getWriter(), user);
             } else {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 resp.getWriter().write("{\"error\": \"User not found\"}");
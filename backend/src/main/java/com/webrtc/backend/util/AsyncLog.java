@@ -0,0 +1,301 @@
+package com.webrtc.backend.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Structured logging for request paths that must not wait on the console.
+ *
+ * Callers only append a record to a bounded ring and return; one thread formats the records
+ * as {@code key=value} lines and writes them to stdout (info) or stderr (warn, error) in
+ * batches. When the ring is full the record is dropped and counted rather than blocking the
+ * caller, and the writer reports how many were lost.
+ *
+ * Each category samples its info and warn records: {@code -Dwebrtc.log.sample.<category>=N}
+ * keeps one in N (default 1, every record; 0 turns them off). Errors are always kept.
+ * String values longer than {@code -Dwebrtc.log.maxFieldLength} characters are cut as the
+ * record is queued, so a full SDP is neither held in the ring nor written to the log.
+ */
+public final class AsyncLog {
+
+    private static final int QUEUE_CAPACITY = Integer.getInteger("webrtc.log.queueCapacity", 8192);
+    private static final int MAX_FIELD_LENGTH = Integer.getInteger("webrtc.log.maxFieldLength", 256);
+    private static final int BATCH_SIZE = 256;
+
+    private static final AsyncLog INSTANCE = new AsyncLog();
+
+    private final BlockingQueue<Record> ring = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ConcurrentMap<String, Category> categories = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Only touched by the writer thread
+    private long reportedDropped;
+
+    private AsyncLog() {
+        writerThread = new Thread(this::writeLoop, "async-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public static AsyncLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the category {@code name}, created on first use with its configured sample rate
+     */
+    public Category category(String name) {
+        return categories.computeIfAbsent(name, Category::new);
+    }
+
+    private void append(Record record) {
+        if (!ring.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        while (running || !ring.isEmpty()) {
+            try {
+                Record first = ring.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    ring.drainTo(batch, BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // shutdown() interrupts us; keep draining until the ring is empty
+                running = false;
+            }
+            for (Record record : batch) {
+                format(record, record.level == Level.INFO ? out : err);
+            }
+            batch.clear();
+
+            long lost = dropped.sum();
+            if (lost != reportedDropped) {
+                err.append(Instant.now()).append(" WARN log ring full dropped=")
+                        .append(lost - reportedDropped).append('\n');
+                reportedDropped = lost;
+            }
+            // One write per batch, so the console lock is taken here and not by request threads
+            if (out.length() > 0) {
+                System.out.print(out);
+                System.out.flush();
+                out.setLength(0);
+            }
+            if (err.length() > 0) {
+                System.err.print(err);
+                System.err.flush();
+                err.setLength(0);
+            }
+        }
+    }
+
+    private static void format(Record record, StringBuilder line) {
+        line.append(Instant.ofEpochMilli(record.timestamp)).append(' ')
+                .append(record.level).append(' ')
+                .append(record.category).append(' ')
+                .append(record.message);
+        Object[] fields = record.fields;
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(' ').append(fields[i]).append('=');
+            appendValue(line, fields[i + 1]);
+        }
+        if (record.thrown != null) {
+            line.append(" error=");
+            appendValue(line, String.valueOf(record.thrown.getMessage()));
+            StringWriter trace = new StringWriter();
+            record.thrown.printStackTrace(new PrintWriter(trace));
+            line.append('\n').append(trace);
+        } else {
+            line.append('\n');
+        }
+    }
+
+    /**
+     * Appends a value, cut to the maximum length and quoted if it has spaces, quotes or line breaks.
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        String text;
+        int cut;
+        if (value instanceof Truncated) {
+            text = ((Truncated) value).head;
+            cut = ((Truncated) value).cut;
+        } else {
+            text = String.valueOf(value);
+            cut = text.length() - MAX_FIELD_LENGTH;
+            if (cut > 0) {
+                text = text.substring(0, MAX_FIELD_LENGTH);
+            }
+        }
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            line.append(text);
+        } else {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"': line.append("\\\""); break;
+                    case '\\': line.append("\\\\"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    case '\t': line.append("\\t"); break;
+                    default: line.append(c);
+                }
+            }
+            line.append('"');
+        }
+        if (cut > 0) {
+            line.append("...(+").append(cut).append(" chars)");
+        }
+    }
+
+    public Collection<Category> getCategories() {
+        return categories.values();
+    }
+
+    public int getQueueDepth() {
+        return ring.size();
+    }
+
+    /**
+     * @return records lost because the ring was full since startup
+     */
+    public long getDroppedRecords() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer after everything already queued has been written.
+     */
+    public void shutdown() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    enum Level {
+        INFO, WARN, ERROR
+    }
+
+    /**
+     * A named source of log records with its own sample rate. Fields are given as alternating
+     * names and values; long strings are cut on the calling thread, everything else is only
+     * turned into text on the writer thread.
+     */
+    public final class Category {
+
+        private final String name;
+        private final int sampleRate;
+        private final LongAdder sampledOut = new LongAdder();
+
+        Category(String name) {
+            this.name = name;
+            this.sampleRate = Integer.getInteger("webrtc.log.sample." + name, 1);
+        }
+
+        public void info(String message, Object... fields) {
+            if (sampled()) {
+                append(new Record(Level.INFO, name, message, truncate(fields), null));
+            }
+        }
+
+        public void warn(String message, Object... fields) {
+            if (sampled()) {
+                append(new Record(Level.WARN, name, message, truncate(fields), null));
+            }
+        }
+
+        public void error(String message, Throwable thrown, Object... fields) {
+            append(new Record(Level.ERROR, name, message, truncate(fields), thrown));
+        }
+
+        /**
+         * Replaces string values over the maximum length with their head, in the varargs array
+         * itself, so the ring does not keep the full text alive until the record is written.
+         */
+        private Object[] truncate(Object[] fields) {
+            for (int i = 1; i < fields.length; i += 2) {
+                Object value = fields[i];
+                if (value instanceof CharSequence && ((CharSequence) value).length() > MAX_FIELD_LENGTH) {
+                    CharSequence text = (CharSequence) value;
+                    fields[i] = new Truncated(text.subSequence(0, MAX_FIELD_LENGTH).toString(), text.length() - MAX_FIELD_LENGTH);
+                }
+            }
+            return fields;
+        }
+
+        private boolean sampled() {
+            if (sampleRate == 1 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0)) {
+                return true;
+            }
+            sampledOut.increment();
+            return false;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return info and warn records skipped by sampling since startup
+         */
+        public long getSampledOut() {
+            return sampledOut.sum();
+        }
+    }
+
+    /**
+     * The first {@code MAX_FIELD_LENGTH} characters of a longer string value.
+     */
+    private static final class Truncated {
+        final String head;
+        final int cut;
+
+        Truncated(String head, int cut) {
+            this.head = head;
+            this.cut = cut;
+        }
+    }
+
+    private static final class Record {
+        final long timestamp = System.currentTimeMillis();
+        final Level level;
+        final String category;
+        final String message;
+        final Object[] fields;
+        final Throwable thrown;
+
+        Record(Level level, String category, String message, Object[] fields, Throwable thrown) {
+            this.level = level;
+            this.category = category;
+            this.message = message;
+            this.fields = fields;
+            this.thrown = thrown;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.webrtc.backend.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseUtil {
-    private static final String URL = "jdbc:mysql://localhost:3306/webrtc_db?useSSL=false";
-    private static final String USER = "root"; // TODO: Replace with your DB username
-    private static final String PASSWORD = "root"; // TODO: Replace with your DB password
+    private static final String URL = System.getProperty("webrtc.db.url", "jdbc:mysql://localhost:3306/webrtc_db?useSSL=false");
+    private static final String USER = System.getProperty("webrtc.db.user", "root"); // TODO: Replace with your DB username
+    private static final String PASSWORD = System.getProperty("webrtc.db.password", "root"); // TODO: Replace with your DB password
+
+    // Pool settings, overridable with -D system properties
+    private static final int POOL_MAX_SIZE = Integer.getInteger("webrtc.db.pool.maxSize", 20);
+    private static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("webrtc.db.pool.borrowTimeoutMs", 5000L);
+    private static final int POOL_VALIDATION_TIMEOUT_SECONDS = Integer.getInteger("webrtc.db.pool.validationTimeoutSeconds", 2);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("webrtc.db.pool.idleTimeoutMs", 300_000L);
+
+    private static final ConnectionPool POOL;
 
     static {
         try {
@@ -16,9 +23,22 @@ public class DatabaseUtil {
             e.printStackTrace();
             throw new RuntimeException("Failed to load MySQL JDBC driver");
         }
+        POOL = new ConnectionPool(URL, USER, PASSWORD, POOL_MAX_SIZE,
+                POOL_BORROW_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_SECONDS, POOL_IDLE_TIMEOUT_MS);
     }
 
+    /**
+     * Borrows a connection from the shared pool. Closing it returns it to the pool.
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return POOL.getConnection();
+    }
+
+    public static ConnectionPool getDataSource() {
+        return POOL;
+    }
+
+    public static void shutdown() {
+        POOL.close();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package com.webrtc.backend.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hashed timing wheel for deadlines that keep moving forward, such as heartbeat timeouts.
+ *
+ * Items are placed in the slot of their deadline once. Extending a deadline only changes
+ * what {@code deadlineOf} returns and costs nothing here; when the slot comes round the
+ * item is either expired or moved to the slot of its new deadline. That keeps both a
+ * deadline update and a tick O(1) per item instead of scanning everything.
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final ArrayDeque<T>[] slots;
+    private final int mask;
+    private final ToLongFunction<T> deadlineOf;
+    private long lastTick;
+    private int size;
+
+    /**
+     * @param tickMillis resolution of the wheel
+     * @param span       longest expected deadline distance; longer ones still work but are visited once per rotation
+     * @param deadlineOf current deadline of an item, in epoch milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, long span, ToLongFunction<T> deadlineOf) {
+        int wheelSize = Integer.highestOneBit((int) Math.max(1, span / tickMillis)) << 1;
+        this.tickMillis = tickMillis;
+        this.slots = (ArrayDeque<T>[]) new ArrayDeque<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.mask = wheelSize - 1;
+        this.deadlineOf = deadlineOf;
+        this.lastTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    public synchronized void schedule(T item) {
+        place(item, deadlineOf.applyAsLong(item) / tickMillis);
+        size++;
+    }
+
+    /**
+     * Processes every tick up to {@code now}.
+     * @return the items whose deadline has passed, removed from the wheel
+     */
+    public synchronized List<T> advance(long now) {
+        long targetTick = now / tickMillis;
+        List<T> expired = new ArrayList<>();
+        // Never spin more than one rotation, e.g. after a long pause
+        long firstTick = Math.max(lastTick + 1, targetTick - mask);
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            ArrayDeque<T> slot = slots[(int) (tick & mask)];
+            int pending = slot.size();
+            // Only look at what was there when we arrived; items we re-place here belong to a later rotation
+            for (int i = 0; i < pending; i++) {
+                T item = slot.pollFirst();
+                long deadline = deadlineOf.applyAsLong(item);
+                if (deadline <= now) {
+                    expired.add(item);
+                    size--;
+                } else {
+                    place(item, Math.max(deadline / tickMillis, targetTick + 1));
+                }
+            }
+        }
+        lastTick = targetTick;
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(T item, long tick) {
+        slots[(int) (Math.max(tick, lastTick + 1) & mask)].addLast(item);
+    }
+}
@@ -0,0 +1,62 @@
+package com.webrtc.backend.util;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.webrtc.backend.model.CallPartiesRequest;
+import com.webrtc.backend.model.ChatFrame;
+import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.model.IceCandidate;
+import com.webrtc.backend.model.SdpExchange;
+import com.webrtc.backend.model.User;
+import com.webrtc.backend.model.UserIdRequest;
+
+/**
+ * The one JSON configuration shared by every servlet, WebSocket endpoint and service.
+ *
+ * Readers and writers are bound to their type up front, so the (de)serializers are looked up
+ * once instead of on every call, and they are immutable and safe to share between threads.
+ * Request bodies are read into small typed classes rather than generic maps, which avoids
+ * building a map and boxing every value per request.
+ */
+public final class JsonCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final ObjectReader CHAT_MESSAGE_READER = MAPPER.readerFor(ChatMessage.class);
+    public static final ObjectWriter CHAT_MESSAGE_WRITER = MAPPER.writerFor(ChatMessage.class);
+
+    public static final ObjectReader SDP_READER = MAPPER.readerFor(SdpExchange.class);
+    public static final ObjectWriter SDP_WRITER = MAPPER.writerFor(SdpExchange.class);
+
+    public static final ObjectReader ICE_CANDIDATE_READER = MAPPER.readerFor(IceCandidate.class);
+    public static final ObjectWriter ICE_CANDIDATE_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<IceCandidate>>() {});
+
+    public static final ObjectReader USER_READER = MAPPER.readerFor(User.class);
+    public static final ObjectWriter USER_WRITER = MAPPER.writerFor(User.class);
+
+    // Request bodies used to be read into maps, which ignored extra fields; keep doing so
+    public static final ObjectReader USER_ID_REQUEST_READER = MAPPER.readerFor(UserIdRequest.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    public static final ObjectReader CHAT_FRAME_READER = MAPPER.readerFor(ChatFrame.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    public static final ObjectReader CALL_PARTIES_REQUEST_READER = MAPPER.readerFor(CallPartiesRequest.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /** For maps, tree nodes and other values without a dedicated writer. */
+    public static final ObjectWriter WRITER = MAPPER.writer();
+
+    private JsonCodec() {
+    }
+
+    /**
+     * The shared mapper, for building tree nodes and creating generators. Do not reconfigure it.
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+}
@@ -0,0 +1,73 @@
+package com.webrtc.backend.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram.
+ * Recording is lock-free and allocation-free, so it can sit on every request path.
+ * Bucket bounds are upper bounds in seconds; the last bucket is +Inf.
+ */
+public class LatencyHistogram {
+
+    public static final double[] DEFAULT_BOUNDS_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] boundsSeconds;
+    private final long[] boundsNanos;
+    private final AtomicLongArray buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS_SECONDS);
+    }
+
+    public LatencyHistogram(double[] boundsSeconds) {
+        this.boundsSeconds = boundsSeconds.clone();
+        this.boundsNanos = new long[boundsSeconds.length];
+        for (int i = 0; i < boundsSeconds.length; i++) {
+            boundsNanos[i] = (long) (boundsSeconds[i] * 1_000_000_000L);
+        }
+        this.buckets = new AtomicLongArray(boundsSeconds.length + 1);
+    }
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        sumNanos.add(nanos);
+    }
+
+    public int getBucketCount() {
+        return buckets.length();
+    }
+
+    /**
+     * @return the upper bound of bucket {@code index} in seconds, or +Inf for the last bucket
+     */
+    public double getUpperBoundSeconds(int index) {
+        return index < boundsSeconds.length ? boundsSeconds[index] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the number of samples in bucket {@code index} (not cumulative)
+     */
+    public long getBucketValue(int index) {
+        return buckets.get(index);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1_000_000_000.0;
+    }
+}
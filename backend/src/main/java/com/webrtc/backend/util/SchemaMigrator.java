@@ -0,0 +1,188 @@
+package com.webrtc.backend.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+/**
+ * Brings the database schema up to date at startup.
+ *
+ * Migrations are the numbered scripts under {@code db/migration} on the classpath, applied
+ * in order and each at most once. Applied versions are recorded in {@code schema_version}.
+ * A named MySQL lock keeps two nodes starting at the same time from applying the same
+ * script twice; other databases, such as the in-memory H2 the query plan check runs on, are
+ * migrated without it. MySQL commits DDL implicitly, so a script that fails halfway has to be
+ * fixed by hand before it is retried.
+ */
+public class SchemaMigrator {
+
+    /** Every migration, oldest first. Add new scripts at the end; never edit an applied one. */
+    private static final String[] MIGRATIONS = {
+        "V1__create_schema.sql",
+        "V2__index_hot_queries.sql",
+        "V3__read_watermarks.sql",
+        "V4__derive_read_state_from_watermarks.sql",
+    };
+
+    private static final String LOCK_NAME = "webrtc_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // MySQL ER_DUP_KEYNAME: the index already exists, e.g. created by hand before migrations
+    private static final int DUPLICATE_KEY_NAME = 1061;
+
+    private final DataSource dataSource;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Applies every migration that has not been applied yet.
+     * @return the number of migrations applied
+     */
+    public int migrate() throws SQLException, IOException {
+        try (Connection conn = dataSource.getConnection()) {
+            String product = conn.getMetaData().getDatabaseProductName();
+            boolean lock = "MySQL".equals(product) || "MariaDB".equals(product);
+            if (lock) {
+                acquireLock(conn);
+            }
+            try {
+                createVersionTable(conn);
+                Set<Integer> applied = appliedVersions(conn);
+                int count = 0;
+                for (String script : MIGRATIONS) {
+                    int version = versionOf(script);
+                    if (applied.contains(version)) {
+                        continue;
+                    }
+                    System.out.println("Applying schema migration " + script);
+                    for (String statement : readStatements(script)) {
+                        execute(conn, statement);
+                    }
+                    recordVersion(conn, version, script);
+                    count++;
+                }
+                return count;
+            } finally {
+                if (lock) {
+                    releaseLock(conn);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the version the schema will be at once every migration is applied
+     */
+    public static int getLatestVersion() {
+        return versionOf(MIGRATIONS[MIGRATIONS.length - 1]);
+    }
+
+    private void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "script VARCHAR(200) NOT NULL, "
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private void recordVersion(Connection conn, int version, String script) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schema_version (version, script) VALUES (?, ?)")) {
+            stmt.setInt(1, version);
+            stmt.setString(2, script);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void execute(Connection conn, String statement) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(statement);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != DUPLICATE_KEY_NAME) {
+                throw e;
+            }
+            System.out.println("Skipping, index already exists: " + e.getMessage());
+        }
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    /**
+     * Splits a script into statements. Statements end with a semicolon at the end of a line;
+     * lines starting with {@code --} are comments.
+     */
+    static List<String> readStatements(String script) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream("db/migration/" + script);
+        if (in == null) {
+            throw new IOException("Migration script not found on the classpath: " + script);
+        }
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder current = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    current.setLength(current.lastIndexOf(";"));
+                    statements.add(current.toString().trim());
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) {
+                statements.add(current.toString().trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -2,8 +2,9 @@ package com.webrtc.backend.websocket;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
@@ -13,91 +14,143 @@ import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.webrtc.backend.dao.ChatDao;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webrtc.backend.model.ChatFrame;
 import com.webrtc.backend.model.ChatMessage;
+import com.webrtc.backend.service.ChatMessageWriter;
+import com.webrtc.backend.service.PresenceBroadcaster;
+import com.webrtc.backend.service.ReadReceipts;
+import com.webrtc.backend.service.RecentMessageCache;
+import com.webrtc.backend.service.UserDirectory;
+import com.webrtc.backend.util.AsyncLog;
+import com.webrtc.backend.util.JsonCodec;
 
 @ServerEndpoint("/ws/chat/{userId}")
 public class ChatWebSocket {
 
-    private static final Map<Integer, Session> activeSessions = new ConcurrentHashMap<>();
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final ChatDao chatDao = new ChatDao();
+    private static final SessionRegistry activeSessions = new SessionRegistry();
+    private static final LongAdder relayedMessages = new LongAdder();
+    private static final ChatMessageWriter chatMessageWriter = ChatMessageWriter.getInstance();
+    private static final RecentMessageCache recentMessageCache = RecentMessageCache.getInstance();
+    private static final PresenceBroadcaster presenceBroadcaster = PresenceBroadcaster.getInstance();
+    private static final ReadReceipts readReceipts = ReadReceipts.getInstance();
+    private static final UserDirectory userDirectory = UserDirectory.getInstance();
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("chat");
 
     @OnOpen
     public void onOpen(Session session, @PathParam("userId") int userId) {
         activeSessions.put(userId, session);
-        System.out.println("WebSocket connection opened for user: " + userId);
+        LOG.info("opened", "userId", userId);
     }
 
     @OnClose
-    public void onClose(@PathParam("userId") int userId) {
-        activeSessions.remove(userId);
-        System.out.println("WebSocket connection closed for user: " + userId);
+    public void onClose(Session session, @PathParam("userId") int userId) {
+        OutboundDispatcher.release(session);
+        // A newer connection of the same user keeps its registration and presence interest
+        if (activeSessions.remove(session)) {
+            presenceBroadcaster.unsubscribe(userId);
+        }
+        LOG.info("closed", "userId", userId);
     }
 
     @OnMessage
     public void onMessage(String messageJson, @PathParam("userId") int senderId) {
         try {
-            // Parse the incoming message
-            ChatMessage message = objectMapper.readValue(messageJson, ChatMessage.class);
+            ChatFrame frame = JsonCodec.CHAT_FRAME_READER.readValue(messageJson);
+
+            // Control message: {"type": "presence-subscribe", "userIds": [...]} replaces the
+            // set of users whose joins and leaves are pushed to this connection
+            if ("presence-subscribe".equals(frame.getType())) {
+                presenceBroadcaster.subscribe(senderId,
+                        frame.getUserIds() != null ? frame.getUserIds() : Collections.<Integer>emptyList());
+                return;
+            }
+
+            ChatMessage message = new ChatMessage();
+            message.setReceiverId(frame.getReceiverId());
+            message.setContent(frame.getContent());
             message.setSenderId(senderId);
             message.setRead(false);
-            
-            // Save the message to the database
-            chatDao.saveMessage(message);
-            
-            // Try to deliver the message to the receiver if they're online
+
+            // Checked before anything is relayed, since a message that cannot be saved must not be delivered
+            if (!userDirectory.exists(senderId) || !userDirectory.exists(message.getReceiverId())) {
+                sendError(senderId, 0, message.getReceiverId(), "Unknown sender or receiver");
+                return;
+            }
+
+            // Queue the message for the next group commit; this gives it its id, so it can be
+            // relayed before it is written
+            CompletableFuture<ChatMessage> saved = chatMessageWriter.submit(message);
+
+            // Try to deliver the message to the receiver if they're online; it only counts as
+            // delivered once it has actually been written to their connection
             Session receiverSession = activeSessions.get(message.getReceiverId());
-            if (receiverSession != null && receiverSession.isOpen()) {
-                receiverSession.getBasicRemote().sendText(objectMapper.writeValueAsString(message));
-                // Mark the message as read since it was delivered
-                chatDao.markAsRead(message.getId());
-                message.setRead(true);
-                
-                // Send delivery confirmation back to the sender
-                Session senderSession = activeSessions.get(senderId);
-                if (senderSession != null && senderSession.isOpen()) {
-                    senderSession.getBasicRemote().sendText(objectMapper.writeValueAsString(message));
-                }
+            CompletableFuture<Void> delivered = new CompletableFuture<>();
+            if (OutboundDispatcher.send(receiverSession, JsonCodec.CHAT_MESSAGE_WRITER.writeValueAsString(message),
+                    () -> delivered.complete(null))) {
+                relayedMessages.increment();
             }
+
+            saved.whenComplete((savedMessage, error) -> {
+                if (error != null) {
+                    LOG.error("save_failed", error, "userId", senderId, "messageId", message.getId());
+                    sendError(senderId, message.getId(), message.getReceiverId(), "Message could not be saved");
+                    return;
+                }
+                // Only committed messages go into the cache, so it never shows one that was lost
+                recentMessageCache.add(savedMessage);
+            });
+            // Delivered counts as read. Both are needed: the watermark may only pass a saved message,
+            // and the sender is told once the message is durable
+            saved.thenAcceptBoth(delivered, (savedMessage, ignored) -> {
+                readReceipts.markDelivered(savedMessage.getReceiverId(), senderId, savedMessage.getId());
+                savedMessage.setRead(true);
+                sendMessage(senderId, savedMessage);
+            });
         } catch (IOException | SQLException e) {
-            e.printStackTrace();
+            LOG.error("message_failed", e, "userId", senderId, "message", messageJson);
         }
     }
 
     @OnError
     public void onError(Session session, Throwable throwable) {
-        System.err.println("Error in WebSocket session: " + session.getId());
-        throwable.printStackTrace();
+        OutboundDispatcher.release(session);
+        LOG.error("session_error", throwable, "userId", SessionRegistry.getUserId(session), "sessionId", session.getId());
     }
 
     /**
      * Utility method to send a raw JSON string to a specific user.
-     * Can be used for notifications like 'hangup'.
+     * Can be used for notifications like 'hangup'. Does not wait for the message to be written.
      */
     public static void notifyUser(int userId, String jsonMessage) {
+        OutboundDispatcher.send(activeSessions.get(userId), jsonMessage);
+    }
+
+    /**
+     * Utility method to send a message to a specific user
+     */
+    public static void sendMessage(int userId, ChatMessage message) {
         try {
-            Session session = activeSessions.get(userId);
-            if (session != null && session.isOpen()) {
-                session.getBasicRemote().sendText(jsonMessage);
-            }
+            OutboundDispatcher.send(activeSessions.get(userId), JsonCodec.CHAT_MESSAGE_WRITER.writeValueAsString(message));
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("send_failed", e, "userId", userId, "messageId", message.getId());
         }
     }
 
     /**
-     * Utility method to send a message to a specific user
+     * Tells the sender that a message was not accepted:
+     * {@code {"type": "chat-error", "id": ..., "receiverId": ..., "error": ...}}, with id 0 if it never got one.
      */
-    public static void sendMessage(int userId, ChatMessage message) {
+    private static void sendError(int senderId, int messageId, int receiverId, String error) {
+        ObjectNode frame = JsonCodec.mapper().createObjectNode();
+        frame.put("type", "chat-error");
+        frame.put("id", messageId);
+        frame.put("receiverId", receiverId);
+        frame.put("error", error);
         try {
-            Session session = activeSessions.get(userId);
-            if (session != null && session.isOpen()) {
-                session.getBasicRemote().sendText(objectMapper.writeValueAsString(message));
-            }
+            notifyUser(senderId, JsonCodec.WRITER.writeValueAsString(frame));
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("send_failed", e, "userId", senderId, "messageId", messageId);
         }
     }
 
@@ -105,7 +158,17 @@ public class ChatWebSocket {
      * Check if a user is currently connected
      */
     public static boolean isUserConnected(int userId) {
-        Session session = activeSessions.get(userId);
-        return session != null && session.isOpen();
+        return activeSessions.isConnected(userId);
+    }
+
+    public static int getOpenSessionCount() {
+        return activeSessions.size();
+    }
+
+    /**
+     * @return chat messages handed to the receiver's outbound queue since startup
+     */
+    public static long getRelayedMessages() {
+        return relayedMessages.sum();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.webrtc.backend.websocket;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import com.webrtc.backend.util.AsyncLog;
+
+/**
+ * Non-blocking outbound path shared by the WebSocket endpoints.
+ *
+ * Every session gets a bounded queue and at most one async send in flight; the next message
+ * is sent from the completion callback of the previous one. Callers only ever enqueue, so a
+ * slow receiver fills its own queue instead of stalling the thread that relays to it.
+ *
+ * When a queue is full the overflow policy decides: {@code drop-oldest} discards the oldest
+ * queued message, {@code disconnect} closes the slow session so it can reconnect and resync.
+ * A failed send closes the session too. Queued is therefore not delivered: callers that need
+ * to know pass a callback, which runs only once the container reports the message written.
+ */
+public final class OutboundDispatcher {
+
+    private static final int MAX_QUEUE_SIZE = Integer.getInteger("webrtc.ws.outbound.maxQueueSize", 256);
+    private static final boolean DISCONNECT_ON_OVERFLOW =
+            "disconnect".equalsIgnoreCase(System.getProperty("webrtc.ws.outbound.overflowPolicy", "drop-oldest"));
+
+    private static final String QUEUE_PROPERTY = OutboundDispatcher.class.getName() + ".queue";
+
+    // Session id -> queue, kept so the queue depths can be reported
+    private static final Map<String, SessionQueue> queues = new ConcurrentHashMap<>();
+    private static final AtomicLong droppedMessages = new AtomicLong();
+    private static final AtomicLong disconnectedSessions = new AtomicLong();
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("outbound");
+
+    private OutboundDispatcher() {
+    }
+
+    /**
+     * Queues a text message for the session and returns without waiting for it to be written.
+     * @return false if the session is closed or the message was rejected by the overflow policy
+     */
+    public static boolean send(Session session, String text) {
+        return send(session, text, null);
+    }
+
+    /**
+     * Same as {@link #send(Session, String)}, running {@code onSent} on the container's thread
+     * once the message has been written. It never runs if the message is dropped or the send fails.
+     */
+    public static boolean send(Session session, String text, Runnable onSent) {
+        if (session == null || !session.isOpen()) {
+            return false;
+        }
+        return queueFor(session).offer(new Outbound(text, onSent));
+    }
+
+    /**
+     * Forgets the session's queue. Called from the endpoints' close and error handlers.
+     */
+    public static void release(Session session) {
+        SessionQueue queue = queues.remove(session.getId());
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+
+    public static int getQueueDepth(Session session) {
+        SessionQueue queue = queues.get(session.getId());
+        return queue != null ? queue.depth() : 0;
+    }
+
+    /**
+     * @return the number of messages waiting per session id, including the one being sent
+     */
+    public static Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        for (Map.Entry<String, SessionQueue> entry : queues.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().depth());
+        }
+        return depths;
+    }
+
+    public static int getSessionCount() {
+        return queues.size();
+    }
+
+    public static long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    public static long getDisconnectedSessions() {
+        return disconnectedSessions.get();
+    }
+
+    private static SessionQueue queueFor(Session session) {
+        Map<String, Object> properties = session.getUserProperties();
+        SessionQueue queue = (SessionQueue) properties.get(QUEUE_PROPERTY);
+        if (queue == null) {
+            synchronized (session) {
+                queue = (SessionQueue) properties.get(QUEUE_PROPERTY);
+                if (queue == null) {
+                    queue = new SessionQueue(session);
+                    properties.put(QUEUE_PROPERTY, queue);
+                    queues.put(session.getId(), queue);
+                }
+            }
+        }
+        return queue;
+    }
+
+    private static final class SessionQueue implements SendHandler {
+        private final Session session;
+        private final ArrayDeque<Outbound> pending = new ArrayDeque<>();
+        // The message being written, null when idle
+        private Outbound sending;
+        private boolean closed;
+
+        SessionQueue(Session session) {
+            this.session = session;
+        }
+
+        boolean offer(Outbound message) {
+            Outbound next;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (pending.size() >= MAX_QUEUE_SIZE) {
+                    if (DISCONNECT_ON_OVERFLOW) {
+                        closed = true;
+                        droppedMessages.addAndGet(pending.size() + 1);
+                        pending.clear();
+                        next = null;
+                    } else {
+                        pending.pollFirst();
+                        droppedMessages.incrementAndGet();
+                        pending.addLast(message);
+                        return true;
+                    }
+                } else if (sending != null) {
+                    pending.addLast(message);
+                    return true;
+                } else {
+                    sending = message;
+                    next = message;
+                }
+            }
+            if (next == null) {
+                disconnect();
+                return false;
+            }
+            write(next);
+            return true;
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                LOG.warn("send_failed", "sessionId", session.getId(), "error", result.getException().getMessage());
+                // What is still queued would arrive with a gap; close so the client reconnects and resyncs
+                clear();
+                close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Send failed"));
+                return;
+            }
+            Outbound sent;
+            Outbound next;
+            synchronized (this) {
+                sent = sending;
+                next = pending.pollFirst();
+                sending = next;
+            }
+            if (sent != null && sent.onSent != null) {
+                sent.onSent.run();
+            }
+            if (next != null) {
+                write(next);
+            }
+        }
+
+        private void write(Outbound message) {
+            try {
+                session.getAsyncRemote().sendText(message.text, this);
+            } catch (IllegalStateException e) {
+                // Session closed between the check and the send
+                clear();
+            }
+        }
+
+        private void disconnect() {
+            disconnectedSessions.incrementAndGet();
+            LOG.warn("slow_session_closed", "sessionId", session.getId(), "reason", "queue_full");
+            close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Outbound queue full"));
+        }
+
+        private void close(CloseReason reason) {
+            try {
+                session.close(reason);
+            } catch (IOException e) {
+                LOG.error("close_failed", e, "sessionId", session.getId());
+            }
+        }
+
+        synchronized void clear() {
+            closed = true;
+            sending = null;
+            pending.clear();
+        }
+
+        synchronized int depth() {
+            return pending.size() + (sending != null ? 1 : 0);
+        }
+    }
+
+    private static final class Outbound {
+        final String text;
+        // May be null
+        final Runnable onSent;
+
+        Outbound(String text, Runnable onSent) {
+            this.text = text;
+            this.onSent = onSent;
+        }
+    }
+}
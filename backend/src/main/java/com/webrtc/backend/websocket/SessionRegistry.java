@@ -0,0 +1,174 @@
+package com.webrtc.backend.websocket;
+
+import javax.websocket.Session;
+
+/**
+ * Open WebSocket sessions of one endpoint, keyed by user id.
+ *
+ * Lookups by user id go through a lock-striped open-addressing table on primitive ints, so
+ * they neither box the key nor allocate. The reverse direction is stored on the session
+ * itself (its user properties), which makes close and error handling O(1) instead of a scan
+ * over every connected user. Removal uses backward-shift deletion, so the table never fills
+ * up with tombstones during a disconnect storm.
+ */
+public final class SessionRegistry {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private static final String USER_ID_PROPERTY = SessionRegistry.class.getName() + ".userId";
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public SessionRegistry() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Registers the session for the user, replacing any earlier session of the same user.
+     * @return the replaced session, or null
+     */
+    public Session put(int userId, Session session) {
+        session.getUserProperties().put(USER_ID_PROPERTY, userId);
+        int hash = hash(userId);
+        return segmentFor(hash).put(userId, hash, session);
+    }
+
+    /**
+     * @return the user's session, or null if the user is not connected to this endpoint
+     */
+    public Session get(int userId) {
+        int hash = hash(userId);
+        return segmentFor(hash).get(userId, hash);
+    }
+
+    /**
+     * Removes the session if it is still the one registered for its user. A session that was
+     * already replaced by a newer connection of the same user leaves the newer one in place.
+     * @return true if the session was removed, false if it was not (or no longer) registered
+     */
+    public boolean remove(Session session) {
+        int userId = getUserId(session);
+        if (userId < 0) {
+            return false;
+        }
+        int hash = hash(userId);
+        return segmentFor(hash).remove(userId, hash, session);
+    }
+
+    public boolean isConnected(int userId) {
+        Session session = get(userId);
+        return session != null && session.isOpen();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the user id stored on a registered session, or -1
+     */
+    public static int getUserId(Session session) {
+        Object userId = session.getUserProperties().get(USER_ID_PROPERTY);
+        return userId instanceof Integer ? (Integer) userId : -1;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int hash(int userId) {
+        // Fibonacci hashing spreads sequential ids over segments and slots
+        return userId * 0x9E3779B9;
+    }
+
+    private static final class Segment {
+        private int[] keys = new int[INITIAL_SEGMENT_CAPACITY];
+        private Session[] values = new Session[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        synchronized Session get(int key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        synchronized Session put(int key, int hash, Session value) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Session previous = values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            // Keep the load factor at or below one half so probe sequences stay short
+            if (++size > keys.length >> 1) {
+                resize();
+            }
+            return null;
+        }
+
+        synchronized boolean remove(int key, int hash, Session value) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] != value) {
+                return false; // Not registered, or replaced by a newer session
+            }
+            values[i] = null;
+            size--;
+
+            // Shift later entries of the same probe run back into the hole
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!reachable) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            Session[] oldValues = values;
+            keys = new int[oldKeys.length << 1];
+            values = new Session[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
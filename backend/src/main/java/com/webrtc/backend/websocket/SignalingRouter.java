@@ -0,0 +1,73 @@
+package com.webrtc.backend.websocket;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Finds where a signaling frame has to go without building a JSON tree.
+ *
+ * Frames look like {@code {"type": ..., "payload": {"receiverId": 42, "sdp": "..."}}}. Only
+ * {@code payload.receiverId} matters for relaying, so the frame is read token by token:
+ * other fields are skipped without materializing their values (SDP bodies are several KB),
+ * and parsing stops as soon as the receiver id has been read. The frame text itself is
+ * relayed untouched.
+ */
+public final class SignalingRouter {
+
+    /** The frame has no {@code payload} object. */
+    public static final int NO_PAYLOAD = -1;
+    /** The payload has no usable {@code receiverId}. */
+    public static final int NO_RECEIVER = -2;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private SignalingRouter() {
+    }
+
+    /**
+     * @return the receiver's user id, or {@link #NO_PAYLOAD} / {@link #NO_RECEIVER}
+     * @throws IOException if the frame is not valid JSON up to the point where parsing stopped
+     */
+    public static int receiverId(String frame) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(frame)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return NO_PAYLOAD;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("payload".equals(field) && value == JsonToken.START_OBJECT) {
+                    return readReceiverId(parser);
+                }
+                parser.skipChildren();
+            }
+            return NO_PAYLOAD;
+        }
+    }
+
+    private static int readReceiverId(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("receiverId".equals(field)) {
+                if (value == JsonToken.VALUE_NUMBER_INT) {
+                    return parser.getIntValue();
+                }
+                if (value == JsonToken.VALUE_STRING) {
+                    // Some clients send the id as a string
+                    try {
+                        return Integer.parseInt(parser.getText().trim());
+                    } catch (NumberFormatException e) {
+                        return NO_RECEIVER;
+                    }
+                }
+                return NO_RECEIVER;
+            }
+            parser.skipChildren();
+        }
+        return NO_RECEIVER;
+    }
+}
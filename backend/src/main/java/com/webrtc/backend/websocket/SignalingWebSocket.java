@@ -1,8 +1,6 @@
 package com.webrtc.backend.websocket;
 
-import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
@@ -12,78 +10,70 @@ import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 
-import org.json.JSONObject;
+import com.webrtc.backend.metrics.FlightRecording;
+import com.webrtc.backend.util.AsyncLog;
 
 @ServerEndpoint("/signaling/{userId}")
 public class SignalingWebSocket {
 
-    private static final Map<String, Session> userSessions = new ConcurrentHashMap<>();
+    private static final SessionRegistry userSessions = new SessionRegistry();
+    private static final LongAdder relayedMessages = new LongAdder();
+    private static final AsyncLog.Category LOG = AsyncLog.getInstance().category("signaling");
 
     @OnOpen
-    public void onOpen(Session session, @PathParam("userId") String userId) {
-        System.out.println("Signaling WebSocket opened for user: " + userId);
+    public void onOpen(Session session, @PathParam("userId") int userId) {
+        LOG.info("opened", "userId", userId);
         userSessions.put(userId, session);
     }
 
     @OnMessage
     public void onMessage(String message, Session session) {
-        System.out.println("Signaling message received: " + message);
+        Object event = FlightRecording.beginSignalingRelay();
         try {
-            JSONObject jsonMessage = new JSONObject(message);
-            // The data is inside the 'payload' object
-            JSONObject payload = jsonMessage.optJSONObject("payload");
-
-            if (payload != null) {
-                // Get the receiverId from the payload more robustly
-                if (payload.has("receiverId")) {
-                    String receiverId = payload.get("receiverId").toString();
-                    Session receiverSession = userSessions.get(receiverId);
-
-                    if (receiverSession != null && receiverSession.isOpen()) {
-                        // Relay the original message to the receiver
-                        receiverSession.getBasicRemote().sendText(message);
-                        System.out.println("Signaling message relayed to: " + receiverId);
-                    } else {
-                        System.out.println("Receiver " + receiverId + " not connected or session is closed.");
-                    }
+            // Only the routing field is read; the frame is relayed as received
+            int receiverId = SignalingRouter.receiverId(message);
+            if (receiverId == SignalingRouter.NO_PAYLOAD) {
+                LOG.warn("dropped", "userId", SessionRegistry.getUserId(session), "reason", "no_payload");
+            } else if (receiverId == SignalingRouter.NO_RECEIVER) {
+                LOG.warn("dropped", "userId", SessionRegistry.getUserId(session), "reason", "no_receiver");
+            } else {
+                boolean relayed = OutboundDispatcher.send(userSessions.get(receiverId), message);
+                if (relayed) {
+                    relayedMessages.increment();
                 } else {
-                    System.out.println("Message payload does not contain a 'receiverId'.");
+                    // Relayed without waiting on a slow connection; only failures are logged
+                    LOG.warn("not_relayed", "userId", SessionRegistry.getUserId(session), "receiverId", receiverId);
                 }
-            } else {
-                System.out.println("Message does not contain a 'payload' object.");
+                FlightRecording.signalingRelay(event, SessionRegistry.getUserId(session), receiverId, message.length(), relayed);
             }
         } catch (Exception e) {
-            System.err.println("Error processing signaling message: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("message_failed", e, "userId", SessionRegistry.getUserId(session), "message", message);
         }
     }
 
     @OnClose
     public void onClose(Session session) {
-        String userId = getUserIdFromSession(session);
-        if (userId != null) {
-            userSessions.remove(userId);
-            System.out.println("Signaling WebSocket closed for user: " + userId);
+        OutboundDispatcher.release(session);
+        if (userSessions.remove(session)) {
+            LOG.info("closed", "userId", SessionRegistry.getUserId(session));
         }
     }
 
     @OnError
     public void onError(Session session, Throwable throwable) {
-        String userId = getUserIdFromSession(session);
-        if (userId != null) {
-            userSessions.remove(userId);
-            System.err.println("Error in signaling for user " + userId + ": " + throwable.getMessage());
-        }
-        throwable.printStackTrace();
+        OutboundDispatcher.release(session);
+        userSessions.remove(session);
+        LOG.error("session_failed", throwable, "userId", SessionRegistry.getUserId(session));
     }
 
-    private String getUserIdFromSession(Session session) {
-        for (Map.Entry<String, Session> entry : userSessions.entrySet()) {
-            if (entry.getValue().equals(session)) {
-                return entry.getKey();
-            }
-        }
-        return null;
+    public static int getOpenSessionCount() {
+        return userSessions.size();
     }
-}
 
+    /**
+     * @return messages handed to the receiver's outbound queue since startup
+     */
+    public static long getRelayedMessages() {
+        return relayedMessages.sum();
+    }
+}
@@ -0,0 +1,69 @@
+-- Baseline schema. Uses IF NOT EXISTS so databases created with sql/database_setup.sql
+-- before migrations existed are adopted as they are.
+
+CREATE TABLE IF NOT EXISTS users (
+    id              INT PRIMARY KEY AUTO_INCREMENT,
+    username        VARCHAR(50) UNIQUE NOT NULL,
+    msisdn          VARCHAR(15) UNIQUE NOT NULL,
+    password_hash   TEXT NOT NULL,
+    online          BOOLEAN DEFAULT FALSE,
+    last_update     TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    created_at      TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS sdp_exchange (
+    id            INT PRIMARY KEY AUTO_INCREMENT,
+    sender_id     INT NOT NULL,
+    receiver_id   INT NOT NULL,
+    type          VARCHAR(10) NOT NULL CHECK (type IN ('offer', 'answer')),
+    sdp           TEXT NOT NULL,
+    status        VARCHAR(20) DEFAULT 'pending' CHECK (status IN ('pending', 'accepted', 'rejected', 'timeout')),
+    created_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS ice_candidates (
+    id            INT PRIMARY KEY AUTO_INCREMENT,
+    sender_id     INT NOT NULL,
+    receiver_id   INT NOT NULL,
+    candidate     TEXT NOT NULL,
+    created_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS call_logs (
+    id            INT PRIMARY KEY AUTO_INCREMENT,
+    caller_id     INT NOT NULL,
+    receiver_id   INT NOT NULL,
+    start_time    TIMESTAMP NULL,
+    end_time      TIMESTAMP NULL,
+    status        VARCHAR(20),
+    FOREIGN KEY (caller_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_messages (
+    id            INT PRIMARY KEY AUTO_INCREMENT,
+    sender_id     INT NOT NULL,
+    receiver_id   INT NOT NULL,
+    content       TEXT NOT NULL,
+    `read`        BOOLEAN NOT NULL,
+    created_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_unread_counts (
+    receiver_id   INT NOT NULL,
+    sender_id     INT NOT NULL,
+    unread_count  INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (receiver_id, sender_id),
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+-- Count unread messages that existed before the counter table did
+INSERT IGNORE INTO chat_unread_counts (receiver_id, sender_id, unread_count)
+SELECT receiver_id, sender_id, COUNT(*) FROM chat_messages WHERE `read` = FALSE GROUP BY receiver_id, sender_id;
@@ -0,0 +1,20 @@
+-- Composite indexes for the queries the DAOs run on every request.
+-- users(username) and users(msisdn) are already covered by their UNIQUE constraints.
+
+-- Latest SDP for a receiver: WHERE receiver_id = ? ORDER BY created_at DESC LIMIT 1
+CREATE INDEX idx_sdp_receiver_created ON sdp_exchange (receiver_id, created_at);
+
+-- Latest SDP between two users: WHERE sender_id = ? AND receiver_id = ? ORDER BY created_at DESC LIMIT 1
+CREATE INDEX idx_sdp_pair_created ON sdp_exchange (sender_id, receiver_id, created_at);
+
+-- Candidates for a receiver: SELECT and DELETE WHERE receiver_id = ?
+CREATE INDEX idx_ice_receiver ON ice_candidates (receiver_id);
+
+-- Conversation pages: WHERE sender_id = ? AND receiver_id = ? AND id < ? ORDER BY id DESC LIMIT ?
+CREATE INDEX idx_chat_pair_id ON chat_messages (sender_id, receiver_id, id);
+
+-- Unread messages and counts: WHERE receiver_id = ? AND `read` = FALSE [GROUP BY sender_id]
+CREATE INDEX idx_chat_receiver_read_sender ON chat_messages (receiver_id, `read`, sender_id);
+
+-- Online list and stale-user sweep: WHERE online = TRUE [AND last_update < ?]
+CREATE INDEX idx_users_online_last_update ON users (online, last_update);
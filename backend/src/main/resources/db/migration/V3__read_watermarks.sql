@@ -0,0 +1,14 @@
+-- Read state per conversation: the receiver has read the sender's messages up to last_read_id.
+
+CREATE TABLE IF NOT EXISTS chat_read_state (
+    receiver_id   INT NOT NULL,
+    sender_id     INT NOT NULL,
+    last_read_id  INT NOT NULL,
+    PRIMARY KEY (receiver_id, sender_id),
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+-- Start from the newest message each receiver has already read
+INSERT IGNORE INTO chat_read_state (receiver_id, sender_id, last_read_id)
+SELECT receiver_id, sender_id, MAX(id) FROM chat_messages WHERE `read` = TRUE GROUP BY receiver_id, sender_id;
@@ -0,0 +1,18 @@
+-- Read state comes from chat_read_state alone: a message is read when its id is at or below
+-- the receiver's watermark for its sender. The per-row `read` column is no longer written.
+
+-- Catch the watermarks up with any row marked read after V3 ran
+INSERT INTO chat_read_state (receiver_id, sender_id, last_read_id)
+SELECT receiver_id, sender_id, MAX(id) FROM chat_messages WHERE `read` = TRUE GROUP BY receiver_id, sender_id
+ON DUPLICATE KEY UPDATE last_read_id = GREATEST(last_read_id, VALUES(last_read_id));
+
+-- Count what is above the watermark; an unread message below a newer read one is now read
+UPDATE chat_unread_counts SET unread_count = (
+    SELECT COUNT(*) FROM chat_messages m
+    WHERE m.sender_id = chat_unread_counts.sender_id AND m.receiver_id = chat_unread_counts.receiver_id
+      AND m.id > COALESCE((SELECT r.last_read_id FROM chat_read_state r
+                           WHERE r.receiver_id = chat_unread_counts.receiver_id AND r.sender_id = chat_unread_counts.sender_id), 0)
+);
+
+-- Unread messages are found through chat_unread_counts and the pair index now
+DROP INDEX idx_chat_receiver_read_sender ON chat_messages;
@@ -72,6 +72,28 @@ CREATE TABLE chat_messages (
     FOREIGN KEY (receiver_id) REFERENCES users(id)
 );
 
+-- Table: chat_unread_counts
+-- Number of unread messages per receiver and sender, kept up to date with chat_messages.
+CREATE TABLE chat_unread_counts (
+    receiver_id   INT NOT NULL,
+    sender_id     INT NOT NULL,
+    unread_count  INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (receiver_id, sender_id),
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
+-- Table: chat_read_state
+-- Read watermark per conversation: the receiver has read the sender's messages up to last_read_id.
+CREATE TABLE chat_read_state (
+    receiver_id   INT NOT NULL,
+    sender_id     INT NOT NULL,
+    last_read_id  INT NOT NULL,
+    PRIMARY KEY (receiver_id, sender_id),
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (receiver_id) REFERENCES users(id)
+);
+
 -- --- Test Data ---
 
 -- Insert sample users for testing.
@@ -117,4 +139,14 @@ INSERT INTO chat_messages (sender_id, receiver_id, content, `read`, created_at)
 (5, 3, 'Yes, I''ll review it today.', FALSE, NOW() - INTERVAL 235 MINUTE),
 (3, 5, 'Thanks! Let me know if you need any clarification.', FALSE, NOW() - INTERVAL 230 MINUTE);
 
+-- Each receiver has read up to their newest read test message
+INSERT INTO chat_read_state (receiver_id, sender_id, last_read_id)
+SELECT receiver_id, sender_id, MAX(id) FROM chat_messages WHERE `read` = TRUE GROUP BY receiver_id, sender_id;
+
+-- Count the unread test messages, those above the watermark
+INSERT INTO chat_unread_counts (receiver_id, sender_id, unread_count)
+SELECT m.receiver_id, m.sender_id, COUNT(*) FROM chat_messages m
+LEFT JOIN chat_read_state r ON r.receiver_id = m.receiver_id AND r.sender_id = m.sender_id
+WHERE m.id > COALESCE(r.last_read_id, 0) GROUP BY m.receiver_id, m.sender_id;
+
 COMMIT; 
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.webrtc.backend.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.webrtc.backend.util.ConnectionPool;
+import com.webrtc.backend.util.SchemaMigrator;
+
+/**
+ * Fails the build if a DAO query would scan a whole table; see {@link QueryPlanVerifier}.
+ *
+ * Runs against an in-memory H2 in MySQL mode. Point {@code -Dplans.db.url} (with
+ * {@code -Dplans.db.user} and {@code -Dplans.db.password}) at a MySQL or MariaDB server to
+ * check the plans that optimizer picks.
+ */
+public class QueryPlanTest {
+
+    private static final String URL = System.getProperty("plans.db.url",
+            "jdbc:h2:mem:webrtc_plans;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    private static final String USER = System.getProperty("plans.db.user", "sa");
+    private static final String PASSWORD = System.getProperty("plans.db.password", "");
+
+    @Test
+    public void daoQueriesUseAnIndex() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, 1, 5000, 2, 60_000);
+        try {
+            new SchemaMigrator(pool).migrate();
+            try (Connection conn = pool.getConnection()) {
+                assertEquals(Collections.emptyList(), QueryPlanVerifier.verify(conn));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+}